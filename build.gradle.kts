@@ -1,5 +1,6 @@
 plugins {
     id("application")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 application {
@@ -27,8 +28,32 @@ dependencies {
 
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.0")
     testImplementation("org.mockito:mockito-junit-jupiter:5.5.0")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher:1.10.0")
+
+    jmhCompileOnly("org.projectlombok:lombok:$lombokVersion")
+    jmhAnnotationProcessor("org.projectlombok:lombok:$lombokVersion")
 }
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+// e.g. gradlew replay -PreplayArgs="--max-p99-micros=5000 traces/edit-session.trace"
+tasks.register<JavaExec>("replay") {
+    group = "verification"
+    description = "Replays key traces against the headless editor and reports per key latency percentiles."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("de.cofinpro.editor.replay.KeyReplay")
+    args((project.findProperty("replayArgs") ?: "traces/edit-session.trace").toString().split(" "))
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    // e.g. gradlew jmh -PjmhIncludes=Search -PjmhSizes=1KB,1MB
+    project.findProperty("jmhIncludes")?.let { includes.add(it.toString()) }
+    project.findProperty("jmhSizes")?.let { benchmarkParameters.put("size", listProperty(it.toString())) }
+}
+
+fun listProperty(value: String) = objects.listProperty(String::class.java).value(value.split(","))
@@ -0,0 +1,96 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.terminal.Clipping;
+import de.cofinpro.editor.terminal.Cursor;
+import de.cofinpro.editor.terminal.Refreshable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the edit operations of the model in the middle of a loaded synthetic file - each iteration starts on a freshly
+ * loaded buffer, since the edits pile up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EditorModelBenchmark {
+
+    private static final String TYPED = "typed ahead";
+    private static final int ROWS = 50;
+    private static final int COLS = 200;
+
+    @Param({"1KB", "1MB", "64MB", "1GB"})
+    private String size;
+    private EditorModel model;
+    private Cursor cursor;
+    private Clipping clipping;
+    private int middleLine;
+
+    @Setup(Level.Iteration)
+    public void load() throws IOException {
+        model = new EditorModel();
+        model.loadFromFile(SyntheticFiles.of(size).toString());
+        var topLeft = new Cursor(model, 1, 1);
+        model.insert('x', topLeft); // waits for the line index of a mapped file
+        model.deleteCharAt(topLeft);
+        middleLine = model.lineCount() / 2 + 1;
+        cursor = new Cursor(model, middleLine, 1);
+        clipping = new Clipping(ROWS, COLS, new NoRefresh());
+        clipping.setPosition(cursor);
+    }
+
+    @Benchmark
+    public void insert() {
+        model.insert('x', cursor);
+    }
+
+    @Benchmark
+    public void insertText() {
+        model.insert(TYPED, cursor);
+    }
+
+    @Benchmark
+    public void deleteCharAt() {
+        model.deleteCharAt(cursor);
+    }
+
+    @Benchmark
+    public void insertLine() {
+        model.insertLine(middleLine + 1, 1);
+    }
+
+    @Benchmark
+    public List<String> getClippingContent() {
+        return model.getClippingContent(clipping);
+    }
+
+    static class NoRefresh implements Refreshable {
+
+        @Override
+        public void refresh() {
+            // nothing to paint
+        }
+
+        @Override
+        public void refreshLine() {
+            // nothing to paint
+        }
+    }
+}
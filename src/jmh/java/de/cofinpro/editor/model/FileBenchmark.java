@@ -0,0 +1,69 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.terminal.Clipping;
+import de.cofinpro.editor.terminal.Cursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * loading a file up to its first screen - and saving it after an edit in its middle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileBenchmark {
+
+    private static final int ROWS = 50;
+    private static final int COLS = 200;
+
+    @Param({"1KB", "1MB", "64MB", "1GB"})
+    private String size;
+    private String filename;
+    private String target;
+    private EditorModel model;
+    private Clipping clipping;
+
+    @Setup
+    public void setUp() throws IOException {
+        filename = SyntheticFiles.of(size).toString();
+        target = SyntheticFiles.target(size).toString();
+        model = new EditorModel();
+        model.loadFromFile(filename);
+        clipping = new Clipping(ROWS, COLS, new EditorModelBenchmark.NoRefresh());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(SyntheticFiles.target(size));
+    }
+
+    @Benchmark
+    public List<String> loadFromFile() throws IOException {
+        model.loadFromFile(filename);
+        return model.getClippingContent(clipping);
+    }
+
+    @Benchmark
+    public void saveToFile() throws IOException {
+        model.insert('x', new Cursor(model, model.lineCount() / 2 + 1, 1));
+        model.saveToFile(target);
+    }
+}
@@ -0,0 +1,65 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.terminal.Cursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * next and previous match from the middle of the buffer - answered by the search index, once it is built - and the
+ * first match of a new search text, that has to scan the buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final String[] NEW_TEXTS = {SyntheticFiles.SEARCH_TEXT, SyntheticFiles.SEARCH_TEXT + " "};
+
+    @Param({"1KB", "1MB", "64MB", "1GB"})
+    private String size;
+    private EditorModel model;
+    private Cursor.Position middle;
+    private int newText;
+
+    @Setup
+    public void load() throws IOException {
+        model = new EditorModel();
+        model.loadFromFile(SyntheticFiles.of(size).toString());
+        var topLeft = new Cursor(model, 1, 1);
+        model.insert('x', topLeft); // waits for the line index of a mapped file
+        model.deleteCharAt(topLeft);
+        middle = new Cursor.Position(model.lineCount() / 2 + 1, 1);
+    }
+
+    @Benchmark
+    public Optional<Cursor.Position> search() {
+        return model.search(SyntheticFiles.SEARCH_TEXT, middle);
+    }
+
+    @Benchmark
+    public Optional<Cursor.Position> searchBackwards() {
+        return model.searchBackwards(SyntheticFiles.SEARCH_TEXT, middle);
+    }
+
+    @Benchmark
+    public Optional<Cursor.Position> searchNewText() {
+        newText ^= 1;
+        return model.search(NEW_TEXTS[newText], middle);
+    }
+}
@@ -0,0 +1,79 @@
+package de.cofinpro.editor.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * log like files of a given size (1KB ... 1GB) for the benchmarks - generated once into the temp directory and reused
+ * by later runs. Every 1000th line contains the SEARCH_TEXT.
+ */
+public class SyntheticFiles {
+
+    public static final String SEARCH_TEXT = "needle";
+    private static final Path DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"), "editor-jmh");
+    private static final String[] LEVELS = {"INFO ", "DEBUG", "WARN ", "ERROR"};
+    private static final int SEARCH_LINE_INTERVAL = 1000;
+
+    private SyntheticFiles() {
+        // no instances
+    }
+
+    /**
+     * @param size number with unit KB, MB or GB - e.g. "64MB"
+     */
+    public static Path of(String size) {
+        var file = DIRECTORY.resolve("synthetic-%s.log".formatted(size));
+        try {
+            var bytes = parseSize(size);
+            if (!Files.exists(file) || Files.size(file) != bytes) {
+                Files.createDirectories(DIRECTORY);
+                write(file, bytes);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * a file to save to next to the synthetic ones.
+     */
+    public static Path target(String size) {
+        return DIRECTORY.resolve("saved-%s.log".formatted(size));
+    }
+
+    static long parseSize(String size) {
+        var number = Long.parseLong(size.substring(0, size.length() - 2));
+        return switch (size.substring(size.length() - 2)) {
+            case "KB" -> number << 10;
+            case "MB" -> number << 20;
+            case "GB" -> number << 30;
+            default -> throw new IllegalArgumentException("size unit must be KB, MB or GB: " + size);
+        };
+    }
+
+    private static void write(Path file, long bytes) throws IOException {
+        var line = new StringBuilder();
+        long written = 0;
+        long random = 42;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (int i = 0; written < bytes; i++) {
+                random = random * 6364136223846793005L + 1442695040888963407L;
+                line.setLength(0);
+                line.append("2023-09-02T12:").append(i / 60 % 60).append(':').append(i % 60).append('.')
+                        .append(i % 1000).append(' ').append(LEVELS[(int) (random >>> 62)])
+                        .append(" [worker-").append(random >>> 59 & 7).append("] de.cofinpro.editor.Service - ")
+                        .append(i % SEARCH_LINE_INTERVAL == SEARCH_LINE_INTERVAL - 1 ? SEARCH_TEXT : "request")
+                        .append(' ').append(random >>> 40).append(" handled in ").append(random >>> 56)
+                        .append(" ms\n");
+                var length = (int) Math.min(line.length(), bytes - written);
+                writer.append(line, 0, length);
+                written += length;
+            }
+        }
+    }
+}
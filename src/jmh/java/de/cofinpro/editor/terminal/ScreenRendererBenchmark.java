@@ -0,0 +1,128 @@
+package de.cofinpro.editor.terminal;
+
+import de.cofinpro.editor.model.EditorModel;
+import de.cofinpro.editor.model.SyntheticFiles;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the editor's paint paths into a discarding terminal output: a full frame after a page scroll (clipping contents,
+ * row diffs and status line) and the repaint of the cursor's line after typing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScreenRendererBenchmark {
+
+    private static final int ROWS = 50;
+    private static final int COLS = 200;
+    private static final String STATUS = " Benchmark status";
+
+    @Param({"1KB", "1MB", "64MB", "1GB"})
+    private String size;
+    private EditorModel model;
+    private TerminalOutput output;
+    private ScreenRenderer renderer;
+    private RenderCache renderCache;
+    private Clipping clipping;
+    private Cursor cursor;
+    private int firstLine;
+    private int pageDown;
+
+    @Setup
+    public void setUp() throws IOException {
+        model = new EditorModel();
+        model.loadFromFile(SyntheticFiles.of(size).toString());
+        output = new TerminalOutput(new DiscardingChannel());
+        renderer = new ScreenRenderer(output, ROWS);
+        renderCache = new RenderCache(model);
+        clipping = new Clipping(ROWS, COLS, new NoRefresh());
+        firstLine = Math.max(1, model.lineCount() / 2 - ROWS);
+        cursor = new Cursor(model, firstLine, 1);
+        clipping.setPosition(cursor);
+    }
+
+    @Benchmark
+    public void scrollFrame() {
+        pageDown ^= 1;
+        clipping.setPosition(cursor.jumpToLine(Math.min(model.lineCount(), firstLine + pageDown * ROWS)));
+        var contents = model.getClippingContent(clipping);
+        for (int i = 0; i < ROWS - 1; i++) {
+            renderer.row(i + 1, i < contents.size() ? contents.get(i) : "");
+        }
+        renderer.status(STATUS);
+        renderer.finish(cursor.line - clipping.getTop(), cursor.displayColumn() - clipping.getLeft());
+        output.flush();
+    }
+
+    @Benchmark
+    public void repaintedFrame() {
+        var top = clipping.getTop();
+        for (int i = 0; i < ROWS - 1; i++) {
+            var line = top + i + 1;
+            if (line <= model.lineCount()) {
+                renderer.row(i + 1, renderCache.get(line, clipping));
+            }
+        }
+        renderer.finish(cursor.line - top, cursor.displayColumn() - clipping.getLeft());
+        output.flush();
+    }
+
+    @Benchmark
+    public void typedLine() {
+        model.insert('x', cursor);
+        renderer.row(cursor.line - clipping.getTop(), model.getClippedLine(cursor.line, clipping));
+        renderer.finish(cursor.line - clipping.getTop(), cursor.displayColumn() - clipping.getLeft());
+        output.flush();
+    }
+
+    private static class DiscardingChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer source) {
+            var written = source.remaining();
+            source.position(source.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+
+    private static class NoRefresh implements Refreshable {
+
+        @Override
+        public void refresh() {
+            // painted by the benchmark itself
+        }
+
+        @Override
+        public void refreshLine() {
+            // painted by the benchmark itself
+        }
+    }
+}
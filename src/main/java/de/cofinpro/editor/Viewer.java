@@ -1,18 +1,28 @@
 package de.cofinpro.editor;
 
 import com.sun.jna.Native;
+import de.cofinpro.editor.config.EditorOptions;
 import de.cofinpro.editor.config.Log4j2CustomConfigurationFactory;
+import de.cofinpro.editor.replay.RecordingTerminal;
 import de.cofinpro.editor.terminal.Editor;
+import de.cofinpro.editor.terminal.Terminal;
 import org.apache.logging.log4j.core.config.ConfigurationFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 public class Viewer {
 
     static {
         ConfigurationFactory.setConfigurationFactory(new Log4j2CustomConfigurationFactory());
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         Native.setProtected(true);
-        new Editor().run();
+        var options = EditorOptions.parse(args);
+        var terminal = options.recordFile().isEmpty()
+                ? Terminal.tty()
+                : new RecordingTerminal(Terminal.tty(), Path.of(options.recordFile()));
+        new Editor(options, terminal).run();
     }
 }
@@ -0,0 +1,78 @@
+package de.cofinpro.editor.config;
+
+import de.cofinpro.editor.model.EditorModel;
+
+/**
+ * command line options:
+ * <code>editor [--fsync-interval=MILLIS] [--no-edit-log] [--follow] [--wrap] [--compress] [--line-list]
+ * [--record=TRACE] [--stats[=FILE]] [FILE]</code>
+ */
+public record EditorOptions(String filename, long editLogSyncMillis, boolean follow, boolean wrap, boolean compress,
+                            boolean lineList, String recordFile, boolean showStats, String statsFile) {
+
+    private static final long DEFAULT_SYNC_MILLIS = 200;
+    private static final String SYNC_OPTION = "--fsync-interval=";
+    private static final String NO_EDIT_LOG_OPTION = "--no-edit-log";
+    private static final String FOLLOW_OPTION = "--follow";
+    private static final String WRAP_OPTION = "--wrap";
+    private static final String COMPRESS_OPTION = "--compress";
+    private static final String LINE_LIST_OPTION = "--line-list";
+    private static final String RECORD_OPTION = "--record=";
+    private static final String STATS_OPTION = "--stats";
+
+    public static EditorOptions parse(String... args) {
+        var filename = "";
+        var syncMillis = DEFAULT_SYNC_MILLIS;
+        var follow = false;
+        var wrap = false;
+        var compress = false;
+        var lineList = false;
+        var recordFile = "";
+        var showStats = false;
+        var statsFile = "";
+        for (var arg : args) {
+            if (arg.startsWith(SYNC_OPTION)) {
+                syncMillis = parseMillis(arg.substring(SYNC_OPTION.length()));
+            } else if (arg.equals(NO_EDIT_LOG_OPTION)) {
+                syncMillis = EditorModel.EDIT_LOG_DISABLED;
+            } else if (arg.equals(FOLLOW_OPTION)) {
+                follow = true;
+            } else if (arg.equals(WRAP_OPTION)) {
+                wrap = true;
+            } else if (arg.equals(COMPRESS_OPTION)) {
+                compress = true;
+            } else if (arg.equals(LINE_LIST_OPTION)) {
+                lineList = true;
+            } else if (arg.startsWith(RECORD_OPTION)) {
+                recordFile = arg.substring(RECORD_OPTION.length());
+            } else if (arg.equals(STATS_OPTION)) {
+                showStats = true;
+            } else if (arg.startsWith(STATS_OPTION + "=")) {
+                statsFile = arg.substring(STATS_OPTION.length() + 1);
+            } else if (arg.startsWith("-") || !filename.isEmpty()) {
+                throw new IllegalArgumentException(("usage: editor [%sMILLIS] [%s] [%s] [%s] [%s] [%s] [%sTRACE] "
+                        + "[%s[=FILE]] [FILE]").formatted(SYNC_OPTION, NO_EDIT_LOG_OPTION, FOLLOW_OPTION, WRAP_OPTION,
+                                COMPRESS_OPTION, LINE_LIST_OPTION, RECORD_OPTION, STATS_OPTION));
+            } else {
+                filename = arg;
+            }
+        }
+        return new EditorOptions(filename, syncMillis, follow, wrap, compress, lineList, recordFile, showStats,
+                statsFile);
+    }
+
+    /**
+     * true, if latencies are measured - to be shown in the status bar or written to the stats file on exit.
+     */
+    public boolean measured() {
+        return showStats || !statsFile.isEmpty();
+    }
+
+    private static long parseMillis(String value) {
+        var millis = Long.parseLong(value);
+        if (millis < 0) {
+            throw new IllegalArgumentException("fsync interval must not be negative: " + value);
+        }
+        return millis;
+    }
+}
@@ -18,20 +18,20 @@ import java.net.URI;
 @Order(50)
 public class Log4j2CustomConfigurationFactory extends ConfigurationFactory {
 
-    public static final String STDOUT = "Stdout";
+    public static final String STDERR = "Stderr";
 
     static Configuration createConfiguration(final String name, ConfigurationBuilder<BuiltConfiguration> builder) {
         builder.setConfigurationName(name);
         builder.setStatusLevel(Level.INFO);
-        AppenderComponentBuilder appenderBuilder = builder.newAppender(STDOUT, "CONSOLE").
-                addAttribute("target", ConsoleAppender.Target.SYSTEM_OUT);
+        AppenderComponentBuilder appenderBuilder = builder.newAppender(STDERR, "CONSOLE").
+                addAttribute("target", ConsoleAppender.Target.SYSTEM_ERR);
         appenderBuilder.add(builder.newLayout("PatternLayout").
                 addAttribute("pattern", "%m"));
         builder.add(appenderBuilder);
         builder.add(builder.newLogger("org.apache.logging.log4j", Level.DEBUG).
-                add(builder.newAppenderRef(STDOUT)).
+                add(builder.newAppenderRef(STDERR)).
                 addAttribute("additivity", false));
-        builder.add(builder.newRootLogger(Level.INFO).add(builder.newAppenderRef(STDOUT)));
+        builder.add(builder.newRootLogger(Level.INFO).add(builder.newAppenderRef(STDERR)));
         return builder.build();
     }
 
@@ -0,0 +1,116 @@
+package de.cofinpro.editor.event;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * work running on a worker thread, whose progress and outcome are posted to the event loop - so that the callbacks
+ * run on the editor's thread. Progress is only posted, when its percentage changed. Cancelling is cooperative: the
+ * work polls isCancelled() and ends with a CancellationException, that is handed to the failure callback.
+ */
+public class BackgroundTask<T> implements Progress {
+
+    private final EventLoop events;
+    private final Work<T> work;
+    private IntConsumer progressListener = percent -> {};
+    private Consumer<T> doneListener = result -> {};
+    private Consumer<Exception> failureListener = failure -> {};
+    private int reportedPercent = -1;
+    private volatile boolean cancelled;
+    private boolean done;
+    private T result;
+
+    public BackgroundTask(EventLoop events, Work<T> work) {
+        this.events = events;
+        this.work = work;
+    }
+
+    public BackgroundTask<T> onProgress(IntConsumer listener) {
+        progressListener = listener;
+        return this;
+    }
+
+    public BackgroundTask<T> onDone(Consumer<T> listener) {
+        doneListener = listener;
+        return this;
+    }
+
+    public BackgroundTask<T> onFailure(Consumer<Exception> listener) {
+        failureListener = listener;
+        return this;
+    }
+
+    public BackgroundTask<T> start(String name) {
+        Workers.start(name, this::run);
+        return this;
+    }
+
+    private void run() {
+        try {
+            var value = work.run(this);
+            events.post(() -> complete(value));
+        } catch (Exception e) {
+            events.post(() -> fail(e));
+        } catch (Error e) { // e.g. a regex overflowing the stack - the editor must not wait forever
+            events.post(() -> fail(new ExecutionException(e)));
+            throw e;
+        }
+    }
+
+    private void complete(T value) {
+        done = true;
+        result = value;
+        doneListener.accept(value);
+    }
+
+    private void fail(Exception failure) {
+        done = true;
+        failureListener.accept(failure);
+    }
+
+    /**
+     * called by the work - on the worker thread.
+     */
+    @Override
+    public void report(long completed, long total) {
+        var percent = total <= 0 ? 0 : (int) (Math.min(completed, total) * 100 / total);
+        if (percent != reportedPercent) {
+            reportedPercent = percent;
+            events.post(() -> {
+                if (!done) {
+                    progressListener.accept(percent);
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * true, as soon as the outcome was handed to the callbacks.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * the work's result - empty, if it failed or is not done yet.
+     */
+    public Optional<T> result() {
+        return Optional.ofNullable(result);
+    }
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(Progress progress) throws Exception;
+    }
+}
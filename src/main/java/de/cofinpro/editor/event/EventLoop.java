@@ -0,0 +1,245 @@
+package de.cofinpro.editor.event;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * core of the editor's thread: keys and events posted by workers (results and progress of background tasks) are
+ * queued here. An input thread only reads the terminal's keys and queues them chunk by chunk - it reads the next
+ * chunk on demand, i.e. as soon as the editor asks for keys and none are queued, so a chunk is taken from the
+ * terminal only after the frame of the previous one was painted. The editor reads the queued keys through keys() and
+ * runs the posted events by runUntil(), while it waits for a key or the end of a task - events never run in the
+ * middle of a command.
+ */
+public class EventLoop {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final Runnable afterEvents;
+    private final Object lock = new Object();
+    private final Deque<Runnable> events = new ArrayDeque<>();
+    private final Deque<byte[]> chunks = new ArrayDeque<>();
+    private final KeyStream keys = new KeyStream();
+    private long signals;
+    private boolean demanded;
+    private boolean reading;
+    private boolean inputEnded;
+
+    /**
+     * @param afterEvents run after each event - e.g. to paint what the event changed
+     */
+    public EventLoop(InputStream in, Runnable afterEvents) {
+        this.in = in;
+        this.afterEvents = afterEvents;
+        var reader = new Thread(this::readKeys, "key-input");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * the queued keys - reading blocks until the input thread delivered the next chunk, but runs no events.
+     */
+    public InputStream keys() {
+        return keys;
+    }
+
+    /**
+     * queues an event to be run on the editor's thread - callable from any thread.
+     */
+    public void post(Runnable event) {
+        synchronized (lock) {
+            events.add(event);
+            signal();
+        }
+    }
+
+    public boolean isInputEnded() {
+        synchronized (lock) {
+            return inputEnded && chunks.isEmpty() && !keys.hasRemaining();
+        }
+    }
+
+    /**
+     * runs the posted events until the condition holds - it is checked before each event and whenever keys arrive.
+     */
+    public void runUntil(BooleanSupplier condition) {
+        runUntil(condition, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return true, if the condition holds - false, if the timeout passed first
+     */
+    public boolean runUntil(BooleanSupplier condition, long timeoutMillis) {
+        var deadline = timeoutMillis == Long.MAX_VALUE
+                ? Long.MAX_VALUE
+                : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            long seen;
+            synchronized (lock) {
+                seen = signals;
+            }
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Runnable event;
+            synchronized (lock) {
+                while (events.isEmpty() && signals == seen) {
+                    if (!await(deadline)) {
+                        return false;
+                    }
+                }
+                event = events.poll();
+            }
+            if (event != null) {
+                event.run();
+                afterEvents.run();
+            }
+        }
+    }
+
+    /**
+     * waits on the lock up to the deadline - false, if it passed or the thread was interrupted.
+     */
+    private boolean await(long deadline) {
+        try {
+            if (deadline == Long.MAX_VALUE) {
+                lock.wait();
+                return true;
+            }
+            var remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void signal() {
+        signals++;
+        lock.notifyAll();
+    }
+
+    /**
+     * asks the input thread for the next chunk, unless one is queued or being read already - holding the lock.
+     */
+    private void demand() {
+        if (chunks.isEmpty() && !reading && !inputEnded) {
+            demanded = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void readKeys() {
+        var buffer = new byte[BUFFER_SIZE];
+        var count = 0;
+        while (count >= 0 && awaitDemand()) {
+            try {
+                count = in.read(buffer);
+            } catch (IOException e) {
+                count = -1;
+            }
+            synchronized (lock) {
+                if (count > 0) {
+                    chunks.add(Arrays.copyOf(buffer, count));
+                }
+                inputEnded = count < 0;
+                reading = false;
+                signal();
+            }
+        }
+    }
+
+    private boolean awaitDemand() {
+        synchronized (lock) {
+            try {
+                while (!demanded) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                inputEnded = true;
+                signal();
+                return false;
+            }
+            demanded = false;
+            reading = true;
+            return true;
+        }
+    }
+
+    /**
+     * stream of the queued chunks - only read by the editor's thread.
+     */
+    private class KeyStream extends InputStream {
+
+        private byte[] chunk = new byte[0];
+        private int position;
+
+        private boolean hasRemaining() {
+            return position < chunk.length;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (!hasRemaining() && !takeChunk()) {
+                return -1;
+            }
+            var count = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, target, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!hasRemaining() && !takeChunk()) {
+                return -1;
+            }
+            return chunk[position++] & 0xff;
+        }
+
+        private boolean takeChunk() throws IOException {
+            synchronized (lock) {
+                while (chunks.isEmpty() && !inputEnded) {
+                    demand();
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("interrupted while waiting for keys", e);
+                    }
+                }
+                if (chunks.isEmpty()) {
+                    return false;
+                }
+                chunk = chunks.poll();
+                position = 0;
+                return true;
+            }
+        }
+
+        /**
+         * bytes readable without blocking - asks the input thread for the next chunk, if none is queued.
+         */
+        @Override
+        public int available() {
+            if (hasRemaining()) {
+                return chunk.length - position;
+            }
+            synchronized (lock) {
+                demand();
+                return chunks.isEmpty() ? 0 : chunks.peek().length;
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package de.cofinpro.editor.event;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * progress of background work: the work reports how far it got and polls, whether it was cancelled - it then ends
+ * by throwing a CancellationException.
+ */
+public interface Progress {
+
+    /**
+     * progress of work running in the foreground - nothing is reported, it is never cancelled.
+     */
+    Progress NONE = new Progress() {
+        @Override
+        public void report(long done, long total) {
+            // nobody listens
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    void report(long done, long total);
+
+    boolean isCancelled();
+
+    default void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package de.cofinpro.editor.event;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * starts background work on virtual threads - cheap enough to give every load, save, search and index run a thread
+ * of its own. On runtimes without virtual threads (before Java 21, where Thread.ofVirtual() is missing or a preview)
+ * daemon platform threads are started instead.
+ */
+@Slf4j
+public class Workers {
+
+    private static final ThreadFactory VIRTUAL_THREADS = virtualThreadFactory();
+
+    private Workers() {
+        // no instances
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("no virtual threads - workers run on platform threads");
+            return null;
+        }
+    }
+
+    public static boolean areVirtual() {
+        return VIRTUAL_THREADS != null;
+    }
+
+    public static Thread start(String name, Runnable work) {
+        Thread thread;
+        if (VIRTUAL_THREADS != null) {
+            thread = VIRTUAL_THREADS.newThread(work);
+            thread.setName(name);
+        } else {
+            thread = new Thread(work, name);
+            thread.setDaemon(true);
+        }
+        thread.start();
+        return thread;
+    }
+}
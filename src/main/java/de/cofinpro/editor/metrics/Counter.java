@@ -0,0 +1,19 @@
+package de.cofinpro.editor.metrics;
+
+/**
+ * the events counted.
+ */
+public enum Counter {
+    FULL_REFRESH("full refreshes"),
+    LINE_REFRESH("line refreshes");
+
+    private final String label;
+
+    Counter(String label) {
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+}
@@ -0,0 +1,74 @@
+package de.cofinpro.editor.metrics;
+
+/**
+ * histogram of non-negative long values in the style of HdrHistogram: log-linear buckets - exact below 128, above
+ * each power of two range is split into 64 sub-buckets, so every value is kept with a precision of 2 significant
+ * digits (below 1.6 % error). Recording is one array increment, it never allocates.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 2) * HALF_SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    public void record(long value) {
+        var clamped = Math.max(0, value);
+        counts[indexOf(clamped)]++;
+        count++;
+        sum += clamped;
+        max = Math.max(max, clamped);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public long mean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * the value, that the given percentage of the recorded values are at or below - within the bucket precision.
+     */
+    public long percentile(double percentage) {
+        if (count == 0) {
+            return 0;
+        }
+        var rank = Math.max(1, (long) Math.ceil(count * percentage / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, highestValueAt(i));
+            }
+        }
+        return max;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        var shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        var shift = index / HALF_SUB_BUCKETS - 1;
+        var subBucket = index - shift * HALF_SUB_BUCKETS;
+        return ((subBucket + 1L) << shift) - 1;
+    }
+}
@@ -0,0 +1,29 @@
+package de.cofinpro.editor.metrics;
+
+/**
+ * the distributions recorded - durations in nanoseconds, sizes in bytes.
+ */
+public enum Metric {
+    INPUT_TO_PAINT("input to paint", true),
+    FRAME_BYTES("bytes per frame", false),
+    EDIT("model edit", true),
+    SEARCH("search", true),
+    LOAD("load", true),
+    SAVE("save", true);
+
+    private final String label;
+    private final boolean duration;
+
+    Metric(String label, boolean duration) {
+        this.label = label;
+        this.duration = duration;
+    }
+
+    String label() {
+        return label;
+    }
+
+    boolean isDuration() {
+        return duration;
+    }
+}
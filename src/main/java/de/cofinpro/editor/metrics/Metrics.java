@@ -0,0 +1,119 @@
+package de.cofinpro.editor.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * latency and throughput instrumentation of the editor: histograms of the metrics and counters of events, all
+ * recorded on the editor's thread - work on a worker (load, save, search) only measures its elapsed() time, that the
+ * editor's thread records when the work is done. Switched off (DISABLED), every call returns on its first check -
+ * start() does not even read the clock, so the instrumented paths stay as fast as without.
+ */
+public class Metrics {
+
+    public static final Metrics DISABLED = new Metrics(false);
+
+    private final boolean enabled;
+    private final Histogram[] histograms = new Histogram[Metric.values().length];
+    private final long[] counters = new long[Counter.values().length];
+
+    private Metrics(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled) {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new Histogram();
+            }
+        }
+    }
+
+    public static Metrics enabled() {
+        return new Metrics(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * start time of a measured operation - 0, if switched off.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * records the time passed since the start.
+     */
+    public void stop(Metric metric, long start) {
+        if (enabled) {
+            histograms[metric.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * time passed since the start - 0, if switched off. For operations on other threads, which must not record
+     * themselves: the elapsed time is recorded on the editor's thread.
+     */
+    public long elapsed(long start) {
+        return enabled ? System.nanoTime() - start : 0;
+    }
+
+    public void record(Metric metric, long value) {
+        if (enabled) {
+            histograms[metric.ordinal()].record(value);
+        }
+    }
+
+    public void count(Counter counter) {
+        if (enabled) {
+            counters[counter.ordinal()]++;
+        }
+    }
+
+    public Histogram histogram(Metric metric) {
+        return histograms[metric.ordinal()];
+    }
+
+    /**
+     * appends a short summary for the status bar: input to paint p50 / p99 and mean bytes per frame.
+     */
+    public void appendSummary(StringBuilder target) {
+        if (!enabled) {
+            return;
+        }
+        var latency = histogram(Metric.INPUT_TO_PAINT);
+        target.append(" [key p50 ").append(micros(latency.percentile(50)))
+                .append("us p99 ").append(micros(latency.percentile(99)))
+                .append("us, ").append(histogram(Metric.FRAME_BYTES).mean()).append(" B/frame]");
+    }
+
+    public void writeReport(Path file) throws IOException {
+        try (var writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writer.printf("%-16s %10s %10s %10s %10s %10s %10s %s%n",
+                    "metric", "count", "mean", "p50", "p90", "p99", "max", "unit");
+            for (var metric : Metric.values()) {
+                var histogram = histogram(metric);
+                var unit = metric.isDuration() ? "us" : "bytes";
+                writer.printf("%-16s %10d %10d %10d %10d %10d %10d %s%n", metric.label(), histogram.count(),
+                        scaled(metric, histogram.mean()), scaled(metric, histogram.percentile(50)),
+                        scaled(metric, histogram.percentile(90)), scaled(metric, histogram.percentile(99)),
+                        scaled(metric, histogram.max()), unit);
+            }
+            for (var counter : Counter.values()) {
+                writer.printf("%-16s %10d%n", counter.label(), counters[counter.ordinal()]);
+            }
+        }
+    }
+
+    private static long scaled(Metric metric, long value) {
+        return metric.isDuration() ? micros(value) : value;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,173 @@
+package de.cofinpro.editor.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * streams a document into a temp file next to the target, which atomically replaces the target on commit - the
+ * directory is forced after the rename, so that the new name survives a crash as well. Text is encoded through one
+ * reusable direct buffer, unchanged regions of a source file are copied channel to channel - adjacent regions of the
+ * same source coalescing to one transfer. Consecutive texts are encoded in one run of the encoder, so that a surrogate
+ * pair split between two pieces is encoded as one character. A char, that cannot be encoded, fails the save - the
+ * target is left untouched rather than written with a replacement.
+ */
+class AtomicFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel transferSource;
+    private long transferPosition;
+    private long transferCount;
+    private boolean encoding;
+    private char highSurrogate;
+    private boolean committed;
+
+    AtomicFileWriter(Path target, Charset charset) throws IOException {
+        this.target = target.toAbsolutePath();
+        temp = this.target.resolveSibling(".%s.%d.tmp".formatted(this.target.getFileName(), System.nanoTime()));
+        channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        copyPermissions();
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    private void copyPermissions() throws IOException {
+        if (Files.exists(target)) {
+            try {
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+            } catch (UnsupportedOperationException e) {
+                // no POSIX file system - keep the defaults
+            }
+        }
+    }
+
+    /**
+     * encodes the text - a high surrogate at its end is kept back and encoded with the next text.
+     */
+    void write(CharSequence text, int from, int to) throws IOException {
+        flushTransfer();
+        encoding = true;
+        if (highSurrogate != 0 && from < to) {
+            var pair = CharBuffer.wrap(new char[] {highSurrogate, text.charAt(from)});
+            highSurrogate = 0;
+            encode(pair, false);
+            from += 1 - pair.remaining();
+        }
+        var chars = CharBuffer.wrap(text, from, to);
+        encode(chars, false);
+        if (chars.hasRemaining()) {
+            highSurrogate = chars.get();
+        }
+    }
+
+    void write(char character) throws IOException {
+        write(String.valueOf(character), 0, 1);
+    }
+
+    void transfer(FileChannel source, long position, long count) throws IOException {
+        if (source == transferSource && position == transferPosition + transferCount) {
+            transferCount += count;
+            return;
+        }
+        flushTransfer();
+        finishEncoding();
+        transferSource = source;
+        transferPosition = position;
+        transferCount = count;
+    }
+
+    void commit() throws IOException {
+        flushTransfer();
+        finishEncoding();
+        drain();
+        channel.force(true);
+        channel.close();
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        committed = true;
+        forceDirectory();
+    }
+
+    private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+        CoderResult result;
+        while ((result = encoder.encode(chars, buffer, endOfInput)).isOverflow()) {
+            drain();
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+    }
+
+    /**
+     * ends the encoder's run - a surrogate still kept back has no partner any more.
+     */
+    private void finishEncoding() throws IOException {
+        if (!encoding) {
+            return;
+        }
+        var rest = highSurrogate == 0 ? CharBuffer.allocate(0) : CharBuffer.wrap(new char[] {highSurrogate});
+        highSurrogate = 0;
+        encode(rest, true);
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+        encoder.reset();
+        encoding = false;
+    }
+
+    /**
+     * makes the rename durable - not every platform allows to force a directory.
+     */
+    private void forceDirectory() {
+        try (var directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // e.g. Windows - the rename is as durable as the platform makes it
+        }
+    }
+
+    private void flushTransfer() throws IOException {
+        if (transferSource == null) {
+            return;
+        }
+        drain();
+        var position = transferPosition;
+        var end = transferPosition + transferCount;
+        while (position < end) {
+            position += transferSource.transferTo(position, end - position, channel);
+        }
+        transferSource = null;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package de.cofinpro.editor.model;
+
+import java.io.IOException;
+
+/**
+ * in-memory text source - either wrapping loaded contents or serving as the append-only add source.
+ */
+class CharSource implements TextSource {
+
+    private final CharSequence text;
+    private final LineOffsets newlines = new LineOffsets();
+
+    CharSource(CharSequence text) {
+        this.text = text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == NEWLINE) {
+                newlines.add(i);
+            }
+        }
+    }
+
+    static CharSource appendable() {
+        return new CharSource(new StringBuilder());
+    }
+
+    void append(char character) {
+        if (character == NEWLINE) {
+            newlines.add(text.length());
+        }
+        ((StringBuilder) text).append(character);
+    }
+
+    void append(CharSequence appended) {
+        for (int i = 0; i < appended.length(); i++) {
+            if (appended.charAt(i) == NEWLINE) {
+                newlines.add(text.length() + i);
+            }
+        }
+        ((StringBuilder) text).append(appended);
+    }
+
+    @Override
+    public long length() {
+        return text.length();
+    }
+
+    @Override
+    public int newlinesBetween(long from, long to) {
+        return newlines.countBetween(from, to);
+    }
+
+    @Override
+    public long newlineOffset(long from, int n) {
+        return newlines.get(newlines.firstIndexAtOrAfter(from) + n - 1);
+    }
+
+    @Override
+    public void appendTo(StringBuilder target, long from, long to) {
+        target.append(text, (int) from, (int) to);
+    }
+
+    @Override
+    public void writeTo(AtomicFileWriter writer, long from, long to) throws IOException {
+        writer.write(text, (int) from, (int) to);
+    }
+}
@@ -0,0 +1,265 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.event.Progress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * read-only text source holding a decoded file in blocks of whole lines, each deflated on its own - a log of
+ * several GB takes about its compressed size in memory, plus the newline index. Blocks are inflated on demand and
+ * kept in a small LRU cache of hot blocks, so that the lines around the viewport stay decoded while scrolling. A scan
+ * over all lines (search, filter) inflates one block after the other, a save streams them without caching at all -
+ * neither ever holds the whole text. Cache lookups are synchronized, inflating is not: parallel scans may inflate
+ * blocks concurrently.
+ */
+class CompressedSource implements TextSource {
+
+    static final int BLOCK_CHARS = 1 << 16;
+    static final int MAX_BLOCK_CHARS = BLOCK_CHARS << 2;
+    private static final int HOT_BLOCKS = 32;
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final char CARRIAGE_RETURN = '\r';
+
+    private final LineOffsets newlines = new LineOffsets();
+    private final Map<Integer, String> hotBlocks = new LinkedHashMap<>(HOT_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > HOT_BLOCKS;
+        }
+    };
+    private long[] blockStarts = new long[64];
+    private byte[][] blocks = new byte[64][];
+    private int[] rawSizes = new int[64];
+    private int blockCount;
+    private long length;
+    private long fileLength;
+
+    /**
+     * decodes the file as UTF-8 chunk-wise and deflates it block by block - line breaks normalized to newlines.
+     */
+    static CompressedSource load(Path file, Progress progress) throws IOException {
+        var source = new CompressedSource();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ);
+             var deflater = new Deflating()) {
+            var size = channel.size();
+            var decoder = new Utf8Decoder();
+            var chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            var text = new StringBuilder(MAX_BLOCK_CHARS + CHUNK_SIZE);
+            long read = 0;
+            var count = channel.read(chunk);
+            while (count >= 0) {
+                progress.checkCancelled();
+                read += count;
+                progress.report(read, size);
+                chunk.flip();
+                decoder.decode(chunk, text);
+                chunk.clear();
+                source.addBlocks(text, false, deflater);
+                count = channel.read(chunk);
+            }
+            decoder.finish(text);
+            source.addBlocks(text, true, deflater);
+            source.fileLength = read;
+        }
+        return source;
+    }
+
+    /**
+     * cuts the decoded text into blocks - each ending with a newline behind BLOCK_CHARS, or (for very long lines)
+     * after MAX_BLOCK_CHARS, where no line break or surrogate pair is split. The rest stays in the text.
+     */
+    private void addBlocks(StringBuilder text, boolean last, Deflating deflater) {
+        var start = 0;
+        while (text.length() - start > BLOCK_CHARS) {
+            var end = blockEnd(text, start);
+            if (end < 0) {
+                break;
+            }
+            addBlock(normalized(text, start, end), deflater);
+            start = end;
+        }
+        if (last && text.length() > start) {
+            addBlock(normalized(text, start, text.length()), deflater);
+            start = text.length();
+        }
+        text.delete(0, start);
+    }
+
+    /**
+     * end of the block starting at the given index - -1, if more text is needed.
+     */
+    private static int blockEnd(StringBuilder text, int start) {
+        var limit = Math.min(text.length(), start + MAX_BLOCK_CHARS);
+        for (int i = start + BLOCK_CHARS; i < limit; i++) {
+            if (text.charAt(i - 1) == NEWLINE) {
+                return i;
+            }
+        }
+        if (limit < start + MAX_BLOCK_CHARS) {
+            return -1;
+        }
+        var end = limit;
+        while (text.charAt(end - 1) == CARRIAGE_RETURN || Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static String normalized(StringBuilder text, int start, int end) {
+        var block = text.substring(start, end);
+        return block.indexOf(CARRIAGE_RETURN) < 0
+                ? block
+                : block.replace("\r\n", "\n").replace(CARRIAGE_RETURN, NEWLINE);
+    }
+
+    private void addBlock(String block, Deflating deflater) {
+        if (blockCount == blocks.length) {
+            blockStarts = Arrays.copyOf(blockStarts, blockCount * 2);
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            rawSizes = Arrays.copyOf(rawSizes, blockCount * 2);
+        }
+        for (int i = block.indexOf(NEWLINE); i >= 0; i = block.indexOf(NEWLINE, i + 1)) {
+            newlines.add(length + i);
+        }
+        var bytes = block.getBytes(StandardCharsets.UTF_8);
+        blockStarts[blockCount] = length;
+        rawSizes[blockCount] = bytes.length;
+        blocks[blockCount++] = deflater.deflate(bytes);
+        length += block.length();
+    }
+
+    /**
+     * number of bytes read - the file offset, from which on appended text is followed.
+     */
+    long fileLength() {
+        return fileLength;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int newlinesBetween(long from, long to) {
+        return newlines.countBetween(from, to);
+    }
+
+    @Override
+    public long newlineOffset(long from, int n) {
+        return newlines.get(newlines.firstIndexAtOrAfter(from) + n - 1);
+    }
+
+    @Override
+    public void appendTo(StringBuilder target, long from, long to) {
+        for (int block = blockOf(from); from < to; block++) {
+            var text = hotBlock(block);
+            var start = blockStarts[block];
+            var end = Math.min(to, start + text.length());
+            target.append(text, (int) (from - start), (int) (end - start));
+            from = end;
+        }
+    }
+
+    /**
+     * writes the range block by block - the blocks not hot are inflated for the write only.
+     */
+    @Override
+    public void writeTo(AtomicFileWriter writer, long from, long to) throws IOException {
+        for (int block = blockOf(from); from < to; block++) {
+            String text;
+            synchronized (hotBlocks) {
+                text = hotBlocks.get(block);
+            }
+            if (text == null) {
+                text = inflate(block);
+            }
+            var start = blockStarts[block];
+            var end = Math.min(to, start + text.length());
+            writer.write(text, (int) (from - start), (int) (end - start));
+            from = end;
+        }
+    }
+
+    /**
+     * index of the block containing the offset - binary search over the block starts.
+     */
+    private int blockOf(long offset) {
+        var index = Arrays.binarySearch(blockStarts, 0, blockCount, offset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private String hotBlock(int block) {
+        String text;
+        synchronized (hotBlocks) {
+            text = hotBlocks.get(block);
+        }
+        if (text == null) {
+            text = inflate(block);
+            synchronized (hotBlocks) {
+                hotBlocks.put(block, text);
+            }
+        }
+        return text;
+    }
+
+    private String inflate(int block) {
+        var inflater = new Inflater();
+        try {
+            inflater.setInput(blocks[block]);
+            var bytes = new byte[rawSizes[block]];
+            var size = 0;
+            while (size < bytes.length) {
+                var inflated = inflater.inflate(bytes, size, bytes.length - size);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new DataFormatException("truncated");
+                }
+                size += inflated;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("corrupt block " + block, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * one deflater (at best speed) for all blocks of a load - with a reused output buffer.
+     */
+    private static final class Deflating implements AutoCloseable {
+
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] output = new byte[BLOCK_CHARS];
+
+        private byte[] deflate(byte[] input) {
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            var size = 0;
+            while (!deflater.finished()) {
+                if (size == output.length) {
+                    output = Arrays.copyOf(output, size * 2);
+                }
+                size += deflater.deflate(output, size, output.length - size);
+            }
+            return Arrays.copyOf(output, size);
+        }
+
+        @Override
+        public void close() {
+            deflater.end();
+        }
+    }
+}
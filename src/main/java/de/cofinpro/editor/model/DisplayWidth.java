@@ -0,0 +1,141 @@
+package de.cofinpro.editor.model;
+
+/**
+ * terminal display width of characters: East Asian wide and fullwidth characters (and emoji) take two columns,
+ * combining marks, format characters and everything joined to the preceding character by a zero width joiner take
+ * none. All characters below U+0300 (ASCII in particular) take exactly one column - they are never looked up.
+ * A grapheme is a character with all zero width characters following it - the unit the cursor moves by.
+ */
+public class DisplayWidth {
+
+    public static final int ZERO_WIDTH_JOINER = 0x200d;
+    private static final int FIRST_SPECIAL = 0x300;
+    private static final int[] WIDE_RANGES = {
+            0x1100, 0x115f, 0x231a, 0x231b, 0x2329, 0x232a, 0x23e9, 0x23ec, 0x23f0, 0x23f0, 0x23f3, 0x23f3,
+            0x25fd, 0x25fe, 0x2614, 0x2615, 0x2648, 0x2653, 0x26a1, 0x26a1, 0x26aa, 0x26ab, 0x26bd, 0x26be,
+            0x26c4, 0x26c5, 0x26d4, 0x26d4, 0x26ea, 0x26ea, 0x26f2, 0x26f5, 0x26fa, 0x26fa, 0x26fd, 0x26fd,
+            0x2705, 0x2705, 0x270a, 0x270b, 0x2728, 0x2728, 0x274c, 0x274c, 0x2753, 0x2755, 0x2757, 0x2757,
+            0x2795, 0x2797, 0x27b0, 0x27b0, 0x27bf, 0x27bf, 0x2b1b, 0x2b1c, 0x2b50, 0x2b50, 0x2b55, 0x2b55,
+            0x2e80, 0x303e, 0x3041, 0x33ff, 0x3400, 0x4dbf, 0x4e00, 0x9fff, 0xa000, 0xa4cf, 0xa960, 0xa97f,
+            0xac00, 0xd7a3, 0xf900, 0xfaff, 0xfe10, 0xfe19, 0xfe30, 0xfe6f, 0xff00, 0xff60, 0xffe0, 0xffe6,
+            0x16fe0, 0x18aff, 0x1b000, 0x1b2ff, 0x1f004, 0x1f004, 0x1f0cf, 0x1f0cf, 0x1f18e, 0x1f18e,
+            0x1f191, 0x1f19a, 0x1f200, 0x1f251, 0x1f300, 0x1f64f, 0x1f680, 0x1f6ff, 0x1f7e0, 0x1f7eb,
+            0x1f90c, 0x1f9ff, 0x1fa70, 0x1faff, 0x20000, 0x2fffd, 0x30000, 0x3fffd
+    };
+
+    private DisplayWidth() {
+        // no instances
+    }
+
+    public static int of(int codePoint) {
+        if (codePoint < FIRST_SPECIAL) {
+            return 1;
+        }
+        var type = Character.getType(codePoint);
+        if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || type == Character.FORMAT) {
+            return 0;
+        }
+        return isWide(codePoint) ? 2 : 1;
+    }
+
+    private static boolean isWide(int codePoint) {
+        int low = 0;
+        int high = WIDE_RANGES.length / 2;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (WIDE_RANGES[2 * mid + 1] < codePoint) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < WIDE_RANGES.length / 2 && WIDE_RANGES[2 * low] <= codePoint;
+    }
+
+    public static int of(CharSequence text) {
+        return of(text, 0, text.length());
+    }
+
+    /**
+     * number of columns the chars between from and to take.
+     */
+    public static int of(CharSequence text, int from, int to) {
+        var width = 0;
+        var joined = false;
+        var i = from;
+        while (i < to) {
+            var character = text.charAt(i);
+            if (character < FIRST_SPECIAL) {
+                width++;
+                joined = false;
+                i++;
+                continue;
+            }
+            var codePoint = Character.codePointAt(text, i);
+            if (!joined) {
+                width += of(codePoint);
+            }
+            joined = codePoint == ZERO_WIDTH_JOINER;
+            i += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    /**
+     * true, if the char at the index starts a grapheme - or the index is at the end of the text.
+     */
+    public static boolean isGraphemeStart(CharSequence text, int index) {
+        if (index == 0 || index >= text.length()) {
+            return true;
+        }
+        if (text.charAt(index - 1) == ZERO_WIDTH_JOINER) {
+            return false;
+        }
+        var character = text.charAt(index);
+        if (character < FIRST_SPECIAL) {
+            return true;
+        }
+        if (Character.isLowSurrogate(character) && Character.isHighSurrogate(text.charAt(index - 1))) {
+            return false;
+        }
+        return of(Character.codePointAt(text, index)) > 0;
+    }
+
+    /**
+     * display column (0-based) of the grapheme each char belongs to - and the text's width as last element. Null, if
+     * every char is a grapheme of one column, so that char index and column are the same.
+     */
+    static int[] columns(CharSequence text) {
+        var length = text.length();
+        var i = 0;
+        while (i < length && text.charAt(i) < FIRST_SPECIAL) {
+            i++;
+        }
+        if (i == length) {
+            return null;
+        }
+        var columns = new int[length + 1];
+        for (int j = 0; j < i; j++) {
+            columns[j] = j;
+        }
+        var column = i;
+        var graphemeColumn = Math.max(0, i - 1);
+        var joined = false;
+        while (i < length) {
+            var codePoint = Character.codePointAt(text, i);
+            var count = Character.charCount(codePoint);
+            var width = joined ? 0 : of(codePoint);
+            if (width > 0 || i == 0) {
+                graphemeColumn = column;
+                column += width;
+            }
+            for (int j = i; j < i + count; j++) {
+                columns[j] = graphemeColumn;
+            }
+            joined = codePoint == ZERO_WIDTH_JOINER;
+            i += count;
+        }
+        columns[length] = column;
+        return columns;
+    }
+}
@@ -0,0 +1,550 @@
+package de.cofinpro.editor.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * append-only write-ahead log of the edits made to a document since it was loaded or saved - kept as hidden sibling
+ * file ".name.wal". Edits are encoded into an in-memory buffer only, a committer thread writes them with one write
+ * and one fsync per sync interval (group commit), so typing never waits for the disk. A sync interval of 0 commits
+ * every edit synchronously.
+ * The header records size and modification time of the document: edits are only replayed onto the document version
+ * they were made on. A followed document only grows, so its header records the offset followed up to and a CRC32 of
+ * the bytes before it instead - text appended to the file is cut off before the replay, the text followed while edits
+ * were made is logged as records in between them. Each record is framed by its length and a CRC32, so a torn tail
+ * is detected and cut off.
+ * Records, that failed to be written, are kept and written again with the next group commit - until then the log is
+ * failing, and the editor shows so.
+ */
+class EditLog implements Closeable {
+
+    private static final int MAGIC = 0x4557414c;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final long FOLLOWED = -1;
+    private static final int TAIL_BYTES = 1 << 12;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private static final byte INSERT_CHAR = 1;
+    private static final byte INSERT = 2;
+    private static final byte DELETE_CHAR = 3;
+    private static final byte DELETE = 4;
+    private static final byte SPLIT_LINE = 5;
+    private static final byte JOIN_WITH_NEXT = 6;
+    private static final byte REPLACE_LINES = 7;
+    private static final byte APPEND = 8;
+
+    private final Path document;
+    private final Path path;
+    private final FileChannel channel;
+    private final long syncMillis;
+    private final long documentSize;
+    private final long documentModified;
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private int recordStart;
+    private Base base;
+    private boolean headerStale;
+    private boolean recorded;
+    private FileFollower.Position followed;
+    private long committedSize;
+    private volatile IOException failure;
+    private boolean closed;
+    private Thread committer;
+
+    private EditLog(Path document, long syncMillis) throws IOException {
+        this.document = document.toAbsolutePath();
+        path = this.document.resolveSibling(".%s.wal".formatted(this.document.getFileName()));
+        this.syncMillis = syncMillis;
+        var exists = Files.exists(this.document);
+        documentSize = exists ? Files.size(this.document) : -1;
+        documentModified = exists ? Files.getLastModifiedTime(this.document).toMillis() : 0;
+        base = new Base(documentSize, documentModified, false);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * opens the edit log of the given document - an existing log is kept for replay.
+     */
+    static EditLog open(Path document, long syncMillis) throws IOException {
+        var editLog = new EditLog(document, syncMillis);
+        if (syncMillis > 0) {
+            editLog.committer = new Thread(editLog::commitPeriodically, "edit-log");
+            editLog.committer.setDaemon(true);
+            editLog.committer.start();
+        }
+        return editLog;
+    }
+
+    /**
+     * applies the valid records of a log, that was written for the current document version, to the buffer - the
+     * log is reset otherwise. Appending continues behind the last valid record.
+     *
+     * @param loadedSize number of the document's bytes loaded into the buffer
+     * @return number of replayed edits
+     */
+    int replay(TextBuffer buffer, long loadedSize) throws IOException {
+        var size = channel.size();
+        var header = size < HEADER_SIZE ? null : matchingHeader();
+        var records = header == null ? null
+                : channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size - HEADER_SIZE);
+        var intact = records == null ? 0 : intactLength(records);
+        if (intact == 0) {
+            reset();
+            return 0;
+        }
+        base = header;
+        if (header.isFollowed()) {
+            cutAppended(buffer, loadedSize);
+            followed = header.position();
+        }
+        var replayed = 0;
+        var position = 0;
+        while (position < intact) {
+            var length = records.getInt(position);
+            try {
+                apply(records.slice(position + Integer.BYTES, length), buffer);
+            } catch (IndexOutOfBoundsException e) {
+                break; // the log does not fit the document - the edits replayed so far are kept and counted
+            }
+            replayed++;
+            position += length + Integer.BYTES * 2;
+        }
+        committedSize = HEADER_SIZE + (long) position;
+        channel.truncate(committedSize);
+        recorded = replayed > 0;
+        return replayed;
+    }
+
+    /**
+     * the header, if it was written for the current document version - or for the followed document, that was
+     * appended to since.
+     */
+    private Base matchingHeader() throws IOException {
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return null;
+        }
+        var logged = new Base(header.getLong(), header.getLong(), header.getInt(Integer.BYTES * 7) != 0);
+        var matches = logged.isFollowed()
+                ? documentSize >= logged.size() && tailCrc(logged.size()) == header.getInt()
+                : logged.size() == documentSize && logged.modified() == documentModified;
+        return matches ? logged : null;
+    }
+
+    /**
+     * length of the records up to the first one, that is torn or corrupt.
+     */
+    private int intactLength(ByteBuffer records) {
+        var position = 0;
+        while (records.limit() - position >= Integer.BYTES * 2) {
+            var length = records.getInt(position);
+            if (length <= 0 || length > records.limit() - position - Integer.BYTES * 2
+                    || !isIntact(records, position + Integer.BYTES, length)) {
+                break;
+            }
+            position += length + Integer.BYTES * 2;
+        }
+        return position;
+    }
+
+    private boolean isIntact(ByteBuffer records, int start, int length) {
+        crc.reset();
+        crc.update(records.slice(start, length));
+        return (int) crc.getValue() == records.getInt(start + length);
+    }
+
+    /**
+     * removes the text loaded behind the offset followed up to - the records replay the edits and the appends in
+     * the order they were made, the rest is followed again.
+     */
+    private void cutAppended(TextBuffer buffer, long loadedSize) throws IOException {
+        long chars;
+        try (var appended = FileFollower.open(document, base.position(), StandardCharsets.UTF_8)) {
+            chars = appended.readAppended(text -> {
+            }, loadedSize);
+            if (appended.position().offset() < loadedSize) {
+                chars++; // a sequence cut off at the end was loaded as replacement character
+            }
+        }
+        if (chars == 0) {
+            return;
+        }
+        buffer.awaitLoaded();
+        var line = buffer.lineCount() - 1;
+        var rest = chars;
+        while (rest > buffer.lineLength(line)) {
+            rest -= buffer.lineLength(line) + 1;
+            line--;
+        }
+        buffer.delete(line, (int) (buffer.lineLength(line) - rest), Math.toIntExact(chars));
+    }
+
+    private void reset() throws IOException {
+        channel.truncate(0);
+        base = new Base(documentSize, documentModified, false);
+        writeHeader(base);
+        channel.force(false);
+        committedSize = HEADER_SIZE;
+        recorded = false;
+        headerStale = false;
+    }
+
+    private void writeHeader(Base header) throws IOException {
+        var bytes = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC).putInt(VERSION).putLong(header.size()).putLong(header.modified())
+                .putInt(header.isFollowed() ? tailCrc(header.size()) : 0).putInt(header.afterReturn() ? 1 : 0)
+                .flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, bytes.position());
+        }
+    }
+
+    /**
+     * CRC32 of the document's last bytes before the given size - unchanged, as long as the document is only
+     * appended to.
+     */
+    private int tailCrc(long size) throws IOException {
+        var tail = ByteBuffer.allocate((int) Math.max(0, Math.min(size, TAIL_BYTES)));
+        var start = size - tail.capacity();
+        try (var file = FileChannel.open(document, StandardOpenOption.READ)) {
+            while (tail.hasRemaining() && file.read(tail, start + tail.position()) >= 0) {
+                // reads up to the size
+            }
+        }
+        var tailCrc = new CRC32();
+        tailCrc.update(tail.flip());
+        return (int) tailCrc.getValue();
+    }
+
+    /**
+     * position the document was followed up to, if the replayed log was written for a followed document.
+     */
+    Optional<FileFollower.Position> followedPosition() {
+        return Optional.ofNullable(followed);
+    }
+
+    private void apply(ByteBuffer record, TextBuffer buffer) {
+        var type = record.get();
+        var line = record.getInt();
+        switch (type) {
+            case INSERT_CHAR -> buffer.insert(line, record.getInt(), record.getChar());
+            case INSERT -> {
+                var column = record.getInt();
+                buffer.insert(line, column, chars(record, record.getInt()));
+            }
+            case DELETE_CHAR -> buffer.deleteCharAt(line, record.getInt());
+            case DELETE -> buffer.delete(line, record.getInt(), record.getInt());
+            case SPLIT_LINE -> buffer.splitLine(line, record.getInt());
+            case JOIN_WITH_NEXT -> buffer.joinWithNext(line);
+            case REPLACE_LINES -> {
+                var count = line;
+                var lines = new int[count];
+                var contents = new CharSequence[count];
+                for (int i = 0; i < count; i++) {
+                    lines[i] = record.getInt();
+                    contents[i] = chars(record, record.getInt());
+                }
+                buffer.replaceLines(lines, contents, count);
+            }
+            case APPEND -> {
+                var offset = record.getLong();
+                buffer.append(chars(record, record.getInt()));
+                followed = new FileFollower.Position(offset, line != 0);
+            }
+            default -> throw new IndexOutOfBoundsException("record type " + type);
+        }
+    }
+
+    /**
+     * char view of the next length chars of the record - no copy.
+     */
+    private static CharSequence chars(ByteBuffer record, int length) {
+        var chars = record.slice(record.position(), length * Character.BYTES).asCharBuffer();
+        record.position(record.position() + length * Character.BYTES);
+        return chars;
+    }
+
+    void insert(int line, int column, char character) {
+        synchronized (lock) {
+            begin(INSERT_CHAR, line, Integer.BYTES + Character.BYTES);
+            pending.putInt(column).putChar(character);
+            end();
+        }
+    }
+
+    void insert(int line, int column, CharSequence text) {
+        synchronized (lock) {
+            begin(INSERT, line, 2 * Integer.BYTES + text.length() * Character.BYTES);
+            pending.putInt(column).putInt(text.length());
+            putChars(text);
+            end();
+        }
+    }
+
+    void deleteCharAt(int line, int column) {
+        synchronized (lock) {
+            begin(DELETE_CHAR, line, Integer.BYTES);
+            pending.putInt(column);
+            end();
+        }
+    }
+
+    void delete(int line, int column, int length) {
+        synchronized (lock) {
+            begin(DELETE, line, 2 * Integer.BYTES);
+            pending.putInt(column).putInt(length);
+            end();
+        }
+    }
+
+    void splitLine(int line, int column) {
+        synchronized (lock) {
+            begin(SPLIT_LINE, line, Integer.BYTES);
+            pending.putInt(column);
+            end();
+        }
+    }
+
+    void joinWithNext(int line) {
+        synchronized (lock) {
+            begin(JOIN_WITH_NEXT, line, 0);
+            end();
+        }
+    }
+
+    void replaceLines(int[] lines, CharSequence[] contents, int count) {
+        synchronized (lock) {
+            var length = 2L * Integer.BYTES * count;
+            for (int i = 0; i < count; i++) {
+                length += (long) contents[i].length() * Character.BYTES;
+            }
+            begin(REPLACE_LINES, count, Math.toIntExact(length));
+            for (int i = 0; i < count; i++) {
+                pending.putInt(lines[i]).putInt(contents[i].length());
+                putChars(contents[i]);
+            }
+            end();
+        }
+    }
+
+    boolean isOf(Path file) {
+        return document.equals(file.toAbsolutePath());
+    }
+
+    /**
+     * binds the log to the followed document: the header is based on the followed position, as long as no edits
+     * are recorded - else on the document version the records were made on.
+     */
+    void follow(FileFollower.Position position) {
+        synchronized (lock) {
+            if (!recorded) {
+                rebase(new Base(position.offset(), FOLLOWED, position.afterReturn()));
+            } else if (!base.isFollowed()) {
+                rebase(new Base(base.size(), FOLLOWED, false));
+            }
+        }
+    }
+
+    /**
+     * records text appended to the followed document - before the first edit only its base moves on.
+     *
+     * @param position followed position behind the text
+     */
+    void append(CharSequence text, FileFollower.Position position) {
+        synchronized (lock) {
+            if (!recorded) {
+                rebase(new Base(position.offset(), FOLLOWED, position.afterReturn()));
+                return;
+            }
+            begin(APPEND, position.afterReturn() ? 1 : 0, Long.BYTES + Integer.BYTES + text.length() * Character.BYTES);
+            pending.putLong(position.offset()).putInt(text.length());
+            putChars(text);
+            end();
+        }
+    }
+
+    /**
+     * the header is written with the next commit - before the records depending on it.
+     */
+    private void rebase(Base newBase) {
+        base = newBase;
+        headerStale = true;
+    }
+
+    /**
+     * starts a record: length placeholder, type and line - making room for the payload of given size.
+     */
+    private void begin(byte type, int line, int payloadSize) {
+        var required = 3 * Integer.BYTES + 1 + payloadSize;
+        if (pending.remaining() < required) {
+            var grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + required));
+            pending = grown.put(pending.flip());
+        }
+        recordStart = pending.position();
+        recorded = true;
+        pending.putInt(0).put(type).putInt(line);
+    }
+
+    private void putChars(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            pending.putChar(text.charAt(i));
+        }
+    }
+
+    private void end() {
+        var length = pending.position() - recordStart - Integer.BYTES;
+        pending.putInt(recordStart, length);
+        crc.reset();
+        crc.update(pending.array(), recordStart + Integer.BYTES, length);
+        pending.putInt((int) crc.getValue());
+        if (syncMillis == 0) {
+            commit();
+        }
+    }
+
+    private void commitPeriodically() {
+        try {
+            while (awaitInterval()) {
+                commit();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean awaitInterval() throws InterruptedException {
+        synchronized (lock) {
+            if (!closed) {
+                lock.wait(syncMillis);
+            }
+            return !closed;
+        }
+    }
+
+    /**
+     * true, while records could not be written - the edits since are not safe from a crash.
+     */
+    boolean isFailing() {
+        return failure != null;
+    }
+
+    /**
+     * writes the records collected since the last commit with one write and one fsync - behind the records committed
+     * before, so that a failed write's torn tail is overwritten by the next one.
+     */
+    private void commit() {
+        synchronized (channel) {
+            Base header;
+            synchronized (lock) {
+                var collected = pending;
+                pending = writing;
+                writing = collected;
+                header = headerStale ? base : null;
+                headerStale = false;
+            }
+            if (writing.position() == 0) {
+                restoreStale(header);
+                return;
+            }
+            try {
+                if (header != null) {
+                    writeHeader(header);
+                    header = null;
+                }
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    channel.write(writing, committedSize + writing.position());
+                }
+                channel.force(false);
+                committedSize += writing.limit();
+                writing.clear();
+                failure = null;
+            } catch (IOException e) {
+                failure = e; // shown by the status bar - logging would write into the screen of the raw terminal
+                restoreStale(header);
+                keepForRetry();
+            }
+        }
+    }
+
+    /**
+     * marks a header, that was not written, as stale again - unless the base moved on meanwhile.
+     */
+    private void restoreStale(Base header) {
+        if (header != null) {
+            synchronized (lock) {
+                headerStale = true;
+            }
+        }
+    }
+
+    /**
+     * puts the records, that failed to be written, in front of those collected meanwhile.
+     */
+    private void keepForRetry() {
+        synchronized (lock) {
+            writing.rewind();
+            var required = writing.limit() + pending.position();
+            var records = ByteBuffer.allocate(Math.max(pending.capacity(), required));
+            records.put(writing).put(pending.flip());
+            writing = pending.clear();
+            pending = records;
+        }
+    }
+
+    /**
+     * commits the pending edits and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        if (committer != null) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        commit();
+        channel.close();
+    }
+
+    /**
+     * closes the log and removes its file - the edits are no longer needed.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * document version the records apply to - a followed one by the position followed up to.
+     */
+    private record Base(long size, long modified, boolean afterReturn) {
+
+        boolean isFollowed() {
+            return modified == FOLLOWED;
+        }
+
+        FileFollower.Position position() {
+            return new FileFollower.Position(size, afterReturn);
+        }
+    }
+}
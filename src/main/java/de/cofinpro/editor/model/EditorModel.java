@@ -1,5 +1,9 @@
 package de.cofinpro.editor.model;
 
+import de.cofinpro.editor.event.Progress;
+import de.cofinpro.editor.metrics.Metric;
+import de.cofinpro.editor.metrics.Metrics;
+import de.cofinpro.editor.syntax.Language;
 import de.cofinpro.editor.terminal.Clipping;
 import de.cofinpro.editor.terminal.Cursor;
 
@@ -9,114 +13,588 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 public class EditorModel {
 
-    private static final int INITIAL_LINE_LENGTH = 60;
-    private static final String EMPTY_LINE = "";
+    public static final long EDIT_LOG_DISABLED = -1;
+    public static final int FOLLOW_STOPPED = -2;
+    private static final String NEWLINE = "\n";
 
-    private final List<StringBuilder> lines = new ArrayList<>();
+    private final Supplier<TextBuffer> bufferFactory;
+    private final WriteAheadBuffer buffer;
+    private final SearchIndex searchIndex;
+    private final LineColumns columns;
+    private final LineVersions versions = new LineVersions();
+    private final Highlighter highlighter;
+    private final UndoJournal journal = new UndoJournal(UndoJournal.DEFAULT_CAPACITY);
+    private final List<LineChangeListener> listeners = new ArrayList<>();
+    private long editLogSyncMillis = EDIT_LOG_DISABLED;
+    private boolean followEnabled;
+    private boolean modified;
+    private FileFollower follower;
+    private Metrics metrics = Metrics.DISABLED;
 
     public EditorModel() {
-        lines.add(new StringBuilder(INITIAL_LINE_LENGTH));
+        this(PieceTableBuffer::new);
+    }
+
+    /**
+     * @param bufferFactory creates the empty buffer and those files are loaded into
+     */
+    public EditorModel(Supplier<TextBuffer> bufferFactory) {
+        this.bufferFactory = bufferFactory;
+        buffer = new WriteAheadBuffer(bufferFactory.get());
+        searchIndex = new SearchIndex(this.buffer);
+        columns = new LineColumns(this.buffer);
+        highlighter = new Highlighter(this.buffer);
+        addListener(searchIndex);
+        addListener(columns);
+        addListener(versions);
+        addListener(highlighter);
+    }
+
+    /**
+     * records all edits in a write-ahead log next to the loaded or saved file - committed every syncMillis.
+     */
+    public void enableEditLog(long syncMillis) {
+        editLogSyncMillis = syncMillis;
+    }
+
+    /**
+     * follows loaded files: text appended to them can be read into the buffer by follow().
+     */
+    public void enableFollow() {
+        followEnabled = true;
+    }
+
+    public boolean isFollowing() {
+        return follower != null;
+    }
+
+    /**
+     * records the times of edits, searches, loads and saves.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void addListener(LineChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(LineChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void beforeChange() {
+        searchIndex.settle();
+    }
+
+    private void beforeEdit() {
+        beforeChange();
+        modified = true;
+    }
+
+    /**
+     * true, if the buffer was edited since it was loaded or saved - or unsaved edits were recovered.
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    private void fireLinesChanged(int line, int removed, int added) {
+        listeners.forEach(listener -> listener.linesChanged(line, removed, added));
+    }
+
+    private void fireDocumentReplaced(int removed, int added) {
+        listeners.forEach(listener -> listener.documentReplaced(removed, added));
     }
 
     public List<String> getClippingContent(Clipping clipping) {
-        var max = Math.min(clipping.getBottom(), lines.size());
-        return lines
-                .subList(clipping.getTop(), max)
-                .stream()
-                .map(l -> getClippedLine(l, clipping)).toList();
+        var max = Math.min(clipping.getBottom(), buffer.lineCount());
+        return IntStream.range(clipping.getTop(), max)
+                .mapToObj(lineIndex -> getClippedLineAt(lineIndex, clipping))
+                .toList();
     }
 
-    private String getClippedLine(StringBuilder line, Clipping clipping) {
-        if (line.length() <= clipping.getLeft()) {
-            return EMPTY_LINE;
-        }
-        return line.substring(clipping.getLeft(), Math.min(line.length(), clipping.getRight()));
+    /**
+     * the part of the line visible in the clipping - whose left and right are display columns.
+     */
+    private String getClippedLineAt(int lineIndex, Clipping clipping) {
+        return columns.clip(lineIndex, clipping.getLeft(), clipping.getRight());
     }
 
     public String getClippedLine(int line, Clipping clipping) {
-        return getClippedLine(lines.get(line - 1), clipping);
+        return getClippedLineAt(line - 1, clipping);
+    }
+
+    /**
+     * the graphemes of the line (1-based) completely inside the display columns [left, right).
+     */
+    public String getClippedLine(int line, int left, int right) {
+        return columns.clip(line - 1, left, right);
+    }
+
+    /**
+     * display width of the line (1-based) - in screen columns.
+     */
+    public int getLineWidth(int line) {
+        return columns.column(line - 1, buffer.lineLength(line - 1));
+    }
+
+    /**
+     * token type ordinals of the chars of getClippedLine() - null, if the file's language is not highlighted.
+     */
+    public byte[] getClippedStyles(int line, Clipping clipping) {
+        return getClippedStyles(line, clipping.getLeft(), clipping.getRight());
+    }
+
+    /**
+     * token type ordinals of the chars of getClippedLine(line, left, right) - null, if not highlighted.
+     */
+    public byte[] getClippedStyles(int line, int left, int right) {
+        var styles = highlighter.styles(line - 1);
+        return styles == null ? null : columns.clip(line - 1, left, right, styles);
+    }
+
+    /**
+     * lexer state at the start of the line (1-based), that its styles depend on besides its content.
+     */
+    public int getLineState(int line) {
+        return highlighter.state(line - 1);
+    }
+
+    /**
+     * true, if lines were highlighted from a guessed state - advanceHighlighting() settles them.
+     */
+    public boolean isHighlightPending() {
+        return highlighter.isPending();
+    }
+
+    /**
+     * lexes up to the given number of lines towards those highlighted from a guessed state.
+     *
+     * @return true, if they are settled now - and have to be painted again
+     */
+    public boolean advanceHighlighting(int lines) {
+        return highlighter.advance(lines);
+    }
+
+    /**
+     * version of the line (1-based) - changes whenever the line's content may have changed.
+     */
+    public long getLineVersion(int line) {
+        return versions.version(line - 1);
+    }
+
+    /**
+     * display column of the cursor column - both 1-based.
+     */
+    public int getDisplayColumn(int line, int column) {
+        return columns.column(line - 1, column - 1) + 1;
+    }
+
+    /**
+     * cursor column of the grapheme shown at the display column - both 1-based.
+     */
+    public int getColumnAt(int line, int displayColumn) {
+        return columns.indexAt(line - 1, displayColumn - 1) + 1;
+    }
+
+    /**
+     * cursor column of the grapheme following the one at the column.
+     */
+    public int getNextColumn(int line, int column) {
+        return columns.next(line - 1, column - 1) + 1;
+    }
+
+    public int getPreviousColumn(int line, int column) {
+        return columns.previous(line - 1, column - 1) + 1;
     }
 
     public void insertLine(int line, int column) {
-        var previousLine = lines.get(line - 2);
-        var lineEnd = previousLine.substring(column - 1);
-        previousLine.delete(column - 1, previousLine.length());
-        lines.add(line - 1, new StringBuilder(lineEnd));
+        var start = metrics.start();
+        beforeEdit();
+        journal.recordInsert(line - 2, column - 1, NEWLINE);
+        buffer.splitLine(line - 2, column - 1);
+        fireLinesChanged(line - 2, 1, 2);
+        metrics.stop(Metric.EDIT, start);
     }
 
     public void insert(char character, Cursor cursor) {
-        var lineIndex = cursor.getLine() - 1;
-        if (lineIndex == lines.size()) {
-            lines.add(new StringBuilder(INITIAL_LINE_LENGTH));
-        }
-        lines.get(lineIndex).insert(cursor.getColumn() - 1, character);
+        var start = metrics.start();
+        beforeEdit();
+        journal.recordInsert(cursor.getLine() - 1, cursor.getColumn() - 1, String.valueOf(character));
+        buffer.insert(cursor.getLine() - 1, cursor.getColumn() - 1, character);
+        fireLinesChanged(cursor.getLine() - 1, 1, 1);
+        metrics.stop(Metric.EDIT, start);
+    }
+
+    public void insert(CharSequence text, Cursor cursor) {
+        var start = metrics.start();
+        beforeEdit();
+        var lineCount = buffer.lineCount();
+        journal.recordInsert(cursor.getLine() - 1, cursor.getColumn() - 1, text);
+        buffer.insert(cursor.getLine() - 1, cursor.getColumn() - 1, text);
+        fireLinesChanged(cursor.getLine() - 1, 1, 1 + buffer.lineCount() - lineCount);
+        metrics.stop(Metric.EDIT, start);
     }
 
     public void deleteCharAt(Cursor cursor) {
+        var start = metrics.start();
+        beforeEdit();
         var lineIndex = cursor.getLine() - 1;
         var newLineDeleted = cursor.getColumn() > getColsInLine(cursor.getLine());
         if (newLineDeleted) {
-            if (lines.size() > 1) { // append the nextLine to this one
-                lines.get(lineIndex).append(lines.get(lineIndex + 1));
-                lines.remove(lineIndex + 1);
+            var lineCount = buffer.lineCount();
+            if (cursor.getLine() < lineCount) {
+                journal.recordDelete(lineIndex, cursor.getColumn() - 1, TextSource.NEWLINE);
             }
+            buffer.joinWithNext(lineIndex);
+            fireLinesChanged(lineIndex, 1 + lineCount - buffer.lineCount(), 1);
         } else {
-            lines.get(lineIndex).deleteCharAt(cursor.getColumn() - 1);
+            var column = cursor.getColumn() - 1;
+            var removed = buffer.substring(lineIndex, column, columns.next(lineIndex, column));
+            for (int i = removed.length() - 1; i >= 0; i--) {
+                journal.recordDelete(lineIndex, column + i, removed.charAt(i));
+            }
+            if (removed.length() == 1) {
+                buffer.deleteCharAt(lineIndex, column);
+            } else {
+                buffer.delete(lineIndex, column, removed.length());
+            }
+            fireLinesChanged(lineIndex, 1, 1);
         }
+        metrics.stop(Metric.EDIT, start);
     }
 
     public int getColsInLine(int line) {
-        return lines.get(line - 1).length();
+        return buffer.lineLength(line - 1);
     }
 
+    /**
+     * number of lines - a document still indexed in the background grows by the lines indexed meanwhile. Like all of
+     * the model, only to be called by the editor's thread.
+     */
     public int lineCount() {
-        return lines.size();
+        buffer.followLoading();
+        return buffer.lineCount();
     }
 
     public Optional<Cursor.Position> search(String searchText, Cursor.Position from) {
-        var index = lines.get(from.line() - 1).indexOf(searchText, from.column() - 1);
-        if (index >= 0) {
-            return Optional.of(new Cursor.Position(from.line(), index + 1));
-        }
-        for (int i = from.line(); i < lines.size(); i++) {
-            index = lines.get(i).indexOf(searchText);
-            if (index >= 0) {
-                return Optional.of(new Cursor.Position(i + 1, index + 1));
-            }
-        }
-        return Optional.empty();
+        return search(searchText, from, () -> false);
+    }
+
+    /**
+     * search, that stops waiting for a running parallel scan, as soon as interrupted returns true. Searches run on
+     * workers - their time is recorded by the caller on the editor's thread.
+     */
+    public Optional<Cursor.Position> search(String searchText, Cursor.Position from, BooleanSupplier interrupted) {
+        return searchIndex.next(searchText, from, interrupted);
     }
 
     public Optional<Cursor.Position> searchBackwards(String searchText, Cursor.Position from) {
-        var index = lines.get(from.line() - 1).substring(0, from.column() - 1).lastIndexOf(searchText);
-        if (index >= 0) {
-            return Optional.of(new Cursor.Position(from.line(), index + 1));
-        }
-        for (int i = from.line() - 2; i >= 0; i--) {
-            index = lines.get(i).lastIndexOf(searchText);
-            if (index >= 0) {
-                return Optional.of(new Cursor.Position(i + 1, index + 1));
+        return searchBackwards(searchText, from, () -> false);
+    }
+
+    public Optional<Cursor.Position> searchBackwards(String searchText, Cursor.Position from,
+                                                     BooleanSupplier interrupted) {
+        return searchIndex.previous(searchText, from, interrupted);
+    }
+
+    public Optional<Cursor.Position> searchRegex(Pattern pattern, Cursor.Position from) {
+        return searchRegex(pattern, from, () -> false);
+    }
+
+    /**
+     * regex search, that gives up as soon as interrupted returns true - it is asked every 1024 lines.
+     */
+    public Optional<Cursor.Position> searchRegex(Pattern pattern, Cursor.Position from, BooleanSupplier interrupted) {
+        return new RegexSearch(buffer, pattern).next(from, interrupted);
+    }
+
+    public Optional<Cursor.Position> searchRegexBackwards(Pattern pattern, Cursor.Position from) {
+        return searchRegexBackwards(pattern, from, () -> false);
+    }
+
+    public Optional<Cursor.Position> searchRegexBackwards(Pattern pattern, Cursor.Position from,
+                                                          BooleanSupplier interrupted) {
+        return new RegexSearch(buffer, pattern).previous(from, interrupted);
+    }
+
+    /**
+     * the line indexes (0-based) in [from, to), that contain a match of the pattern - ascending. Only reads the
+     * buffer, so a worker may scan a large one chunk by chunk, while nothing changes it.
+     */
+    public int[] getMatchingLines(Pattern pattern, int from, int to) {
+        return new RegexSearch(buffer, pattern).matchingLines(from, to);
+    }
+
+    /**
+     * replaces all matches of the pattern as one batched mutation of the buffer.
+     *
+     * @return number of replaced matches
+     */
+    public int replaceAll(Pattern pattern, String replacement) {
+        var start = metrics.start();
+        beforeEdit();
+        try {
+            buffer.awaitLoaded();
+            var replacements = new RegexSearch(buffer, pattern).replaceAll(replacement);
+            if (replacements.count() > 0) {
+                journal.recordLines(buffer, replacements);
+                buffer.replaceLines(replacements.lines(), replacements.contents(), replacements.count());
+                var changedLines = replacements.lastLine() - replacements.firstLine() + 1;
+                fireLinesChanged(replacements.firstLine(), changedLines, changedLines);
             }
+            return replacements.matches();
+        } finally {
+            metrics.stop(Metric.EDIT, start);
+        }
+    }
+
+    /**
+     * reverts the last change step.
+     *
+     * @return cursor position behind the restored text - empty, if there is nothing to undo
+     */
+    public Optional<Cursor.Position> undo() {
+        var start = metrics.start();
+        beforeEdit();
+        try {
+            return journal.undo(buffer, this::fireLinesChanged);
+        } finally {
+            metrics.stop(Metric.EDIT, start);
         }
-        return Optional.empty();
     }
 
+    public Optional<Cursor.Position> redo() {
+        var start = metrics.start();
+        beforeEdit();
+        try {
+            return journal.redo(buffer, this::fireLinesChanged);
+        } finally {
+            metrics.stop(Metric.EDIT, start);
+        }
+    }
+
+    /**
+     * saves the buffer - and starts a fresh edit log for the saved version.
+     */
     public void saveToFile(String filename) throws IOException {
-        Files.writeString(Path.of(filename), String.join( "\n", lines));
+        saved(filename, writeFile(filename, Progress.NONE));
+    }
+
+    /**
+     * writes the buffer to the file - may run on a worker thread, as long as the buffer is not changed meanwhile.
+     *
+     * @return nanoseconds taken, if measured
+     */
+    public long writeFile(String filename, Progress progress) throws IOException {
+        var start = metrics.start();
+        buffer.save(Path.of(filename), progress);
+        return metrics.elapsed(start);
+    }
+
+    /**
+     * binds the model to the file written: a followed file is followed on behind its end and a fresh edit log is
+     * started for the saved version.
+     */
+    public void saved(String filename, long nanos) throws IOException {
+        metrics.record(Metric.SAVE, nanos);
+        var file = Path.of(filename);
+        var followed = follower != null && follower.file().equals(file.toAbsolutePath());
+        if (followed) {
+            follower.restartAt(Files.size(file));
+        }
+        attachEditLog(filename, Files.size(file));
+        if (followed) {
+            buffer.followFrom(follower.position());
+        }
+        modified = false;
+        if (highlightAs(filename)) { // only the styles changed - the lines get new versions, nothing is rescanned
+            versions.linesChanged(0, buffer.lineCount(), buffer.lineCount());
+        }
+    }
+
+    /**
+     * highlights with the lexer of the language, that the file name tells - nothing for other files.
+     *
+     * @return true, if the lexer changed
+     */
+    private boolean highlightAs(String filename) {
+        var lexer = Language.of(filename).map(Language::lexer).orElse(null);
+        if (lexer == highlighter.getLexer()) {
+            return false;
+        }
+        highlighter.setLexer(lexer);
+        return true;
+    }
+
+    /**
+     * loads the file and replays the edits, that a crashed session left in its edit log.
+     *
+     * @return number of recovered edits
+     */
+    public int loadFromFile(String filename) throws IOException {
+        return install(readFile(filename, Progress.NONE));
     }
 
-    public void loadFromFile(String filename) throws IOException {
-        replaceBy(Files.readString(Path.of(filename)));
+    /**
+     * reads the file into a new buffer - touching nothing the model shows, so that it may run on a worker thread.
+     */
+    public LoadedFile readFile(String filename, Progress progress) throws IOException {
+        var start = metrics.start();
+        var file = Path.of(filename);
+        var loaded = bufferFactory.get();
+        var bytes = loaded.load(file, progress);
+        return new LoadedFile(file, loaded, bytes, metrics.elapsed(start));
     }
 
-    private void replaceBy(String contents) {
-        lines.clear();
-        contents.lines().forEach(line -> lines.add(new StringBuilder(line)));
-        if (contents.endsWith("\n")) {
-            lines.add(new StringBuilder());
+    /**
+     * shows the read file instead of the current buffer - and replays the edits, that a crashed session left in its
+     * edit log.
+     *
+     * @return number of recovered edits
+     */
+    public int install(LoadedFile loaded) throws IOException {
+        beforeChange();
+        var lineCount = buffer.lineCount();
+        metrics.record(Metric.LOAD, loaded.nanos());
+        buffer.replaceBuffer(loaded.buffer());
+        highlightAs(loaded.file().toString());
+        journal.clear();
+        var recovered = attachEditLog(loaded.file().toString(), loaded.bytes());
+        modified = recovered > 0;
+        follow(loaded.file(), buffer.followedPosition().orElse(new FileFollower.Position(loaded.bytes(), false)),
+                loaded.bytes());
+        fireDocumentReplaced(lineCount, buffer.lineCount());
+        return recovered;
+    }
+
+    /**
+     * follows the file from the position on - without following, the text loaded behind a replayed position is
+     * read once again.
+     */
+    private void follow(Path file, FileFollower.Position position, long loadedSize) throws IOException {
+        stopFollowing();
+        if (followEnabled) {
+            follower = FileFollower.open(file, position, buffer.charset());
+            buffer.followFrom(position);
+        } else if (position.offset() < loadedSize) {
+            try (var rest = FileFollower.open(file, position, buffer.charset())) {
+                rest.readAppended(text -> buffer.appendFollowed(text, file, rest.position()), loadedSize);
+            }
+        }
+    }
+
+    private void stopFollowing() throws IOException {
+        if (follower != null) {
+            follower.close();
+            follower = null;
+        }
+    }
+
+    /**
+     * appends the text written to the followed file since the last call - not as an undoable edit. A file
+     * truncated in between (e.g. rotated) is loaded anew, as long as the buffer is not modified - else following
+     * stops, so that no edit is lost.
+     *
+     * @return index of the first changed line - -1, if the followed file did not change, FOLLOW_STOPPED, if it was
+     * truncated under a modified buffer
+     */
+    public int followFile() throws IOException {
+        if (follower == null) {
+            return -1;
+        }
+        var available = follower.available();
+        if (available < 0 && modified) {
+            stopFollowing();
+            return FOLLOW_STOPPED;
+        }
+        if (available < 0) {
+            loadFromFile(follower.file().toString());
+            return 0;
+        }
+        if (available == 0) {
+            return -1;
+        }
+        beforeChange();
+        var lastLine = buffer.lineCount() - 1;
+        if (follower.readAppended(text -> buffer.appendFollowed(text, follower.file(), follower.position())) == 0) {
+            return -1;
+        }
+        fireLinesChanged(lastLine, 1, buffer.lineCount() - lastLine);
+        return lastLine;
+    }
+
+    /**
+     * binds the buffer to a file not yet existing - replaying the edits of a crashed session on it.
+     *
+     * @return number of recovered edits
+     */
+    public int recoverEdits(String filename) throws IOException {
+        beforeChange();
+        var lineCount = buffer.lineCount();
+        journal.clear();
+        highlightAs(filename);
+        var recovered = attachEditLog(filename, 0);
+        modified = recovered > 0;
+        fireDocumentReplaced(lineCount, buffer.lineCount());
+        return recovered;
+    }
+
+    private int attachEditLog(String filename, long loadedSize) throws IOException {
+        buffer.detach();
+        if (editLogSyncMillis == EDIT_LOG_DISABLED) {
+            return 0;
+        }
+        return buffer.attach(EditLog.open(Path.of(filename), editLogSyncMillis), loadedSize);
+    }
+
+    /**
+     * true, while the edit log cannot be written - edits made since are lost on a crash.
+     */
+    public boolean isEditLogFailing() {
+        return buffer.isEditLogFailing();
+    }
+
+    /**
+     * ends the session: the edit log is removed, if the user quit deliberately - otherwise it is kept for recovery.
+     */
+    public void close(boolean quit) throws IOException {
+        stopFollowing();
+        if (quit) {
+            buffer.detach();
+        } else {
+            buffer.closeEditLog();
+        }
+    }
+
+    /**
+     * a file read into a buffer, that is not shown yet.
+     *
+     * @param bytes number of bytes read - the file offset, from which on appended text is followed
+     * @param nanos time taken by the read, if measured
+     */
+    public record LoadedFile(Path file, TextBuffer buffer, long bytes, long nanos) {
+
+        /**
+         * false, while the buffer still indexes the file in the background.
+         */
+        public boolean isComplete() {
+            return buffer.isLoaded();
+        }
+
+        /**
+         * waits for the background index - reporting its progress.
+         */
+        public void awaitComplete(Progress progress) {
+            buffer.awaitLoaded(progress);
         }
     }
 }
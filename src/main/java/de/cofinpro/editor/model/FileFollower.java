@@ -0,0 +1,142 @@
+package de.cofinpro.editor.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * follows a file, that grows by appends (a log): only the bytes behind the last offset read are read - chunk-wise
+ * through one reusable direct buffer and decoded incrementally into one reusable char buffer, so that a character
+ * split at a chunk end is completed by the next read. Line breaks are normalized to newlines like on load.
+ */
+class FileFollower implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final char NEWLINE = '\n';
+    private static final char RETURN = '\r';
+
+    private final Path file;
+    private final FileChannel channel;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private long offset;
+    private boolean afterReturn;
+
+    private FileFollower(Path file, FileChannel channel, Position position, Charset charset) {
+        this.file = file;
+        this.channel = channel;
+        offset = position.offset();
+        afterReturn = position.afterReturn();
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    static FileFollower open(Path file, Position position, Charset charset) throws IOException {
+        return new FileFollower(file.toAbsolutePath(), FileChannel.open(file, StandardOpenOption.READ), position,
+                charset);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * number of bytes appended since the last read - negative, if the file was truncated.
+     */
+    long available() throws IOException {
+        return channel.size() - offset;
+    }
+
+    /**
+     * position to resume following at - behind the bytes decoded so far.
+     */
+    Position position() {
+        return new Position(offset - bytes.position(), afterReturn);
+    }
+
+    /**
+     * continues following behind the given offset - e.g. after the document was saved to the followed file.
+     */
+    void restartAt(long newOffset) {
+        offset = newOffset;
+        bytes.clear();
+        decoder.reset();
+        afterReturn = false;
+    }
+
+    /**
+     * reads the bytes appended up to the current file size and hands them decoded to the target chunk by chunk - the
+     * chunk is only valid during the call.
+     *
+     * @return number of characters read
+     */
+    long readAppended(Consumer<CharSequence> target) throws IOException {
+        return readAppended(target, channel.size());
+    }
+
+    /**
+     * reads the bytes appended up to the given size like {@link #readAppended(Consumer)}.
+     */
+    long readAppended(Consumer<CharSequence> target, long size) throws IOException {
+        long read = 0;
+        while (offset < size) {
+            bytes.limit((int) Math.min(bytes.capacity(), bytes.position() + size - offset));
+            var count = channel.read(bytes, offset);
+            if (count <= 0) {
+                break;
+            }
+            offset += count;
+            bytes.flip();
+            decoder.decode(bytes, chars, false);
+            bytes.compact();
+            normalizeLineBreaks();
+            chars.flip();
+            if (chars.hasRemaining()) {
+                read += chars.remaining();
+                target.accept(chars);
+            }
+            chars.clear();
+        }
+        return read;
+    }
+
+    /**
+     * turns \r\n and single \r into \n in place - a \r at a chunk end is matched with a \n starting the next chunk.
+     */
+    private void normalizeLineBreaks() {
+        var array = chars.array();
+        var length = chars.position();
+        var kept = 0;
+        for (int i = 0; i < length; i++) {
+            var character = array[i];
+            if (character == NEWLINE && afterReturn) {
+                afterReturn = false;
+                continue;
+            }
+            afterReturn = character == RETURN;
+            array[kept++] = afterReturn ? NEWLINE : character;
+        }
+        chars.position(kept);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * offset to resume following at and whether a \r was read last - a \n following it belongs to the same break.
+     */
+    record Position(long offset, boolean afterReturn) {
+    }
+}
@@ -0,0 +1,137 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.syntax.Lexer;
+import de.cofinpro.editor.syntax.TokenSink;
+
+import java.util.Arrays;
+
+/**
+ * incremental syntax highlighting: the lexer's state at the start of each line is kept as checkpoint, so that a line
+ * is highlighted by lexing it alone. An edit marks the checkpoints behind the changed lines as stale - they are lexed
+ * again, as far as lines are asked for, up to the first line behind the change, whose state matches its old
+ * checkpoint. A line too far behind the last settled checkpoint is highlighted from a guessed state, and the gap is
+ * closed in slices by advance() - so that no keystroke waits for a million lines to be lexed. Lexers of languages
+ * without constructs spanning lines need no checkpoints at all.
+ */
+class Highlighter implements LineChangeListener {
+
+    static final int SYNC_LINES = 2_000;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final TextBuffer buffer;
+    private Lexer lexer;
+    private byte[] states = new byte[INITIAL_CAPACITY];
+    private int known;
+    private int settled;
+    private int changeEnd;
+    private int wanted;
+
+    Highlighter(TextBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    Lexer getLexer() {
+        return lexer;
+    }
+
+    /**
+     * highlights with the lexer from now on - null for no highlighting. All checkpoints are dropped.
+     */
+    void setLexer(Lexer lexer) {
+        this.lexer = lexer;
+        states = new byte[INITIAL_CAPACITY];
+        states[0] = Lexer.INITIAL;
+        known = 0;
+        settled = 0;
+        changeEnd = 0;
+        wanted = 0;
+    }
+
+    @Override
+    public void linesChanged(int line, int removed, int added) {
+        if (lexer == null || line >= known) {
+            return;
+        }
+        var delta = added - removed;
+        changeEnd = settled < known ? Math.max(changeEnd > line + removed ? changeEnd + delta : changeEnd,
+                line + added) : line + added;
+        if (line + removed < known) {
+            ensureCapacity(known + delta + 1);
+            System.arraycopy(states, line + removed + 1, states, line + added + 1, known - line - removed);
+            known += delta;
+        } else {
+            known = line;
+        }
+        settled = Math.min(settled, line);
+    }
+
+    /**
+     * state at the start of the line index - guessed, if its checkpoint is not settled and too far away to be
+     * settled now. The line is then remembered for advance().
+     */
+    int state(int line) {
+        if (lexer == null || !lexer.spansLines()) {
+            return Lexer.INITIAL;
+        }
+        if (line - settled <= SYNC_LINES) {
+            settle(line);
+            return states[line];
+        }
+        wanted = Math.max(wanted, line);
+        return line <= known ? states[line] : Lexer.INITIAL;
+    }
+
+    /**
+     * the token type ordinals of the line's chars - null, if there is no highlighting.
+     */
+    byte[] styles(int line) {
+        if (lexer == null) {
+            return null;
+        }
+        var text = buffer.line(line);
+        var styles = new byte[text.length()];
+        lexer.lex(text, state(line), (start, end, type) -> Arrays.fill(styles, start, end, (byte) type.ordinal()));
+        return styles;
+    }
+
+    /**
+     * true, if a line was highlighted from a guessed state, whose checkpoint is not settled yet.
+     */
+    boolean isPending() {
+        return lexer != null && wanted > settled && wanted < buffer.lineCount();
+    }
+
+    /**
+     * settles up to the given number of checkpoints towards the lines highlighted from guessed states.
+     *
+     * @return true, if all of them are settled now
+     */
+    boolean advance(int lines) {
+        if (!isPending()) {
+            return true;
+        }
+        settle(Math.min(wanted, settled + lines));
+        return !isPending();
+    }
+
+    private void settle(int line) {
+        while (settled < line) {
+            var end = lexer.lex(buffer.line(settled), states[settled], TokenSink.NONE);
+            var next = settled + 1;
+            if (next <= known && next >= changeEnd && states[next] == end) {
+                settled = known; // the stale checkpoints from here on are right again
+            } else {
+                ensureCapacity(next + 1);
+                states[next] = (byte) end;
+                settled = next;
+                known = Math.max(known, next);
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > states.length) {
+            states = Arrays.copyOf(states, Math.max(capacity, 2 * states.length));
+        }
+    }
+}
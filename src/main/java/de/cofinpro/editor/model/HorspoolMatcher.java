@@ -0,0 +1,44 @@
+package de.cofinpro.editor.model;
+
+import java.util.Arrays;
+
+/**
+ * Boyer-Moore-Horspool matcher: the bad character skip table is indexed by the low byte of a character - sharing
+ * a slot only lessens the skip distance, so it stays correct for all of Unicode.
+ */
+class HorspoolMatcher {
+
+    private static final int TABLE_SIZE = 256;
+
+    private final String pattern;
+    private final int[] shifts = new int[TABLE_SIZE];
+
+    HorspoolMatcher(String pattern) {
+        this.pattern = pattern;
+        var length = pattern.length();
+        Arrays.fill(shifts, length);
+        for (int i = 0; i < length - 1; i++) {
+            shifts[pattern.charAt(i) & 0xff] = length - 1 - i;
+        }
+    }
+
+    int indexOf(CharSequence text, int from) {
+        var last = pattern.length() - 1;
+        var i = Math.max(0, from);
+        while (i + last < text.length()) {
+            var j = last;
+            while (text.charAt(i + j) == pattern.charAt(j)) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += shifts[text.charAt(i + last) & 0xff];
+        }
+        return -1;
+    }
+
+    int length() {
+        return pattern.length();
+    }
+}
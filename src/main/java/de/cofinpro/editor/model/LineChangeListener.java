@@ -0,0 +1,19 @@
+package de.cofinpro.editor.model;
+
+/**
+ * gets notified of every change of the model's lines: the lines [line, line + removed) were replaced by the lines
+ * [line, line + added) - 0-based line indexes.
+ */
+@FunctionalInterface
+public interface LineChangeListener {
+
+    void linesChanged(int line, int removed, int added);
+
+    /**
+     * the document was replaced as a whole (loaded, recovered) - its removed lines by the added ones. Listeners, that
+     * would rescan all lines on linesChanged(), drop what they derived instead.
+     */
+    default void documentReplaced(int removed, int added) {
+        linesChanged(0, removed, added);
+    }
+}
@@ -0,0 +1,168 @@
+package de.cofinpro.editor.model;
+
+import java.util.Arrays;
+
+/**
+ * maps between char indexes and display columns of lines - for the cursor and the clipping, that work in graphemes
+ * and columns, while the buffer works in chars. The column arrays of recently asked lines are cached in a direct
+ * mapped table, that is invalidated by line changes. Lines, where every char is one column wide (all ASCII lines),
+ * cache no array - their char index is the column.
+ */
+class LineColumns implements LineChangeListener {
+
+    private static final int SLOTS = 1 << 8;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int NONE = -1;
+
+    private final TextBuffer buffer;
+    private final int[] slotLines = new int[SLOTS];
+    private final int[][] slotColumns = new int[SLOTS][];
+
+    LineColumns(TextBuffer buffer) {
+        this.buffer = buffer;
+        Arrays.fill(slotLines, NONE);
+    }
+
+    @Override
+    public void linesChanged(int line, int removed, int added) {
+        if (removed != added || added >= SLOTS) {
+            Arrays.fill(slotLines, NONE);
+            return;
+        }
+        for (int i = line; i < line + added; i++) {
+            if (slotLines[i & SLOT_MASK] == i) {
+                slotLines[i & SLOT_MASK] = NONE;
+            }
+        }
+    }
+
+    /**
+     * column array as of DisplayWidth.columns - null for a line of one column chars.
+     */
+    private int[] columns(int line) {
+        var slot = line & SLOT_MASK;
+        if (slotLines[slot] != line) {
+            slotColumns[slot] = DisplayWidth.columns(buffer.line(line));
+            slotLines[slot] = line;
+        }
+        return slotColumns[slot];
+    }
+
+    /**
+     * display column of the char index - an index behind the line end continues with one column a char.
+     */
+    int column(int line, int index) {
+        var columns = columns(line);
+        if (columns == null) {
+            return index;
+        }
+        var last = columns.length - 1;
+        return index <= last ? columns[index] : columns[last] + index - last;
+    }
+
+    /**
+     * index of the grapheme at the display column - the line length, if the column is behind the line end.
+     */
+    int indexAt(int line, int column) {
+        var columns = columns(line);
+        if (columns == null) {
+            return Math.min(column, buffer.lineLength(line));
+        }
+        var index = firstAtOrAfter(columns, column + 1) - 1;
+        return firstAtOrAfter(columns, columns[index]);
+    }
+
+    /**
+     * index of the grapheme following the one at the index.
+     */
+    int next(int line, int index) {
+        var columns = columns(line);
+        if (columns == null) {
+            return index + 1;
+        }
+        return Math.min(firstAtOrAfter(columns, columns[index] + 1), columns.length - 1);
+    }
+
+    /**
+     * index of the grapheme preceding the one at the index.
+     */
+    int previous(int line, int index) {
+        var columns = columns(line);
+        if (columns == null) {
+            return index - 1;
+        }
+        return firstAtOrAfter(columns, columns[index - 1]);
+    }
+
+    /**
+     * the graphemes of the line completely inside the columns [left, right) - a wide grapheme cut by the left border
+     * is replaced by blanks, so that the following ones keep their columns.
+     */
+    String clip(int line, int left, int right) {
+        var columns = columns(line);
+        if (columns == null) {
+            return buffer.lineLength(line) <= left ? "" : buffer.substring(line, left, right);
+        }
+        if (columns[columns.length - 1] <= left) {
+            return "";
+        }
+        var start = firstAtOrAfter(columns, left);
+        var end = clipEnd(columns, start, right);
+        var text = buffer.line(line);
+        var clipped = new StringBuilder(end - start + 1);
+        for (int i = left; i < columns[start]; i++) {
+            clipped.append(' ');
+        }
+        return clipped.append(text, start, end).toString();
+    }
+
+    /**
+     * the styles of the line's chars cut like its text by clip() - the blanks replacing a cut wide grapheme are plain.
+     */
+    byte[] clip(int line, int left, int right, byte[] styles) {
+        var columns = columns(line);
+        if (columns == null) {
+            return styles.length <= left
+                    ? new byte[0]
+                    : Arrays.copyOfRange(styles, left, Math.min(right, styles.length));
+        }
+        if (columns[columns.length - 1] <= left) {
+            return new byte[0];
+        }
+        var start = firstAtOrAfter(columns, left);
+        var end = clipEnd(columns, start, right);
+        var blanks = Math.max(0, columns[start] - left);
+        var clipped = new byte[blanks + end - start];
+        System.arraycopy(styles, start, clipped, blanks, end - start);
+        return clipped;
+    }
+
+    /**
+     * index behind the last grapheme ending before the right column.
+     */
+    private static int clipEnd(int[] columns, int start, int right) {
+        var length = columns.length - 1;
+        var end = Math.min(firstAtOrAfter(columns, right), length);
+        if (end > start && columns[end] > right) {
+            end = firstAtOrAfter(columns, columns[end - 1]);
+        }
+        return end;
+    }
+
+    /**
+     * first index, whose column is greater or equal to the given one - the array length, if none.
+     */
+    private static int firstAtOrAfter(int[] columns, int column) {
+        int low = 0;
+        int high = columns.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (columns[mid] < column) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,148 @@
+package de.cofinpro.editor.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the classic layout with one StringBuilder per line - simple, but line inserts and removals are O(lines).
+ */
+public class LineListBuffer implements TextBuffer {
+
+    private static final int INITIAL_LINE_LENGTH = 60;
+
+    private final List<StringBuilder> lines = new ArrayList<>();
+
+    public LineListBuffer() {
+        lines.add(new StringBuilder(INITIAL_LINE_LENGTH));
+    }
+
+    @Override
+    public int lineCount() {
+        return lines.size();
+    }
+
+    @Override
+    public int lineLength(int line) {
+        return lines.get(line).length();
+    }
+
+    @Override
+    public String substring(int line, int from, int to) {
+        var builder = lines.get(line);
+        return builder.substring(from, Math.min(builder.length(), to));
+    }
+
+    @Override
+    public CharSequence line(int line) {
+        return lines.get(line);
+    }
+
+    @Override
+    public void insert(int line, int column, char character) {
+        if (character == '\n') {
+            splitLine(line, column);
+            return;
+        }
+        if (line == lines.size()) {
+            lines.add(new StringBuilder(INITIAL_LINE_LENGTH));
+        }
+        lines.get(line).insert(column, character);
+    }
+
+    @Override
+    public void insert(int line, int column, CharSequence text) {
+        var builder = lines.get(line);
+        var lineEnd = builder.substring(column);
+        builder.setLength(column);
+        var insertedLines = new ArrayList<StringBuilder>();
+        var current = builder;
+        var start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                current.append(text, start, i);
+                current = new StringBuilder();
+                insertedLines.add(current);
+                start = i + 1;
+            }
+        }
+        current.append(text, start, text.length()).append(lineEnd);
+        lines.addAll(line + 1, insertedLines);
+    }
+
+    @Override
+    public void deleteCharAt(int line, int column) {
+        if (column == lines.get(line).length()) {
+            joinWithNext(line);
+        } else {
+            lines.get(line).deleteCharAt(column);
+        }
+    }
+
+    @Override
+    public void delete(int line, int column, int length) {
+        var endLine = line;
+        var endColumn = column + length;
+        while (endColumn > lines.get(endLine).length()) {
+            endColumn -= lines.get(endLine).length() + 1;
+            endLine++;
+        }
+        var builder = lines.get(line);
+        if (endLine == line) {
+            builder.delete(column, endColumn);
+            return;
+        }
+        builder.setLength(column);
+        builder.append(lines.get(endLine), endColumn, lines.get(endLine).length());
+        lines.subList(line + 1, endLine + 1).clear();
+    }
+
+    @Override
+    public void splitLine(int line, int column) {
+        var builder = lines.get(line);
+        var lineEnd = builder.substring(column);
+        builder.delete(column, builder.length());
+        lines.add(line + 1, new StringBuilder(lineEnd));
+    }
+
+    @Override
+    public void joinWithNext(int line) {
+        if (line + 1 < lines.size()) {
+            lines.get(line).append(lines.get(line + 1));
+            lines.remove(line + 1);
+        }
+    }
+
+    @Override
+    public void replaceLines(int[] lines, CharSequence[] contents, int count) {
+        for (int i = 0; i < count; i++) {
+            var builder = this.lines.get(lines[i]);
+            builder.setLength(0);
+            builder.append(contents[i]);
+        }
+    }
+
+    @Override
+    public void replaceBy(String contents) {
+        lines.clear();
+        contents.lines().forEach(line -> lines.add(new StringBuilder(line)));
+        if (lines.isEmpty() || contents.endsWith("\n")) {
+            lines.add(new StringBuilder());
+        }
+    }
+
+    @Override
+    public void save(Path file) throws IOException {
+        try (var writer = new AtomicFileWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lines.size(); i++) {
+                if (i > 0) {
+                    writer.write('\n');
+                }
+                writer.write(lines.get(i), 0, lines.get(i).length());
+            }
+            writer.commit();
+        }
+    }
+}
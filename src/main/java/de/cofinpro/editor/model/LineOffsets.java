@@ -0,0 +1,120 @@
+package de.cofinpro.editor.model;
+
+import java.util.Arrays;
+
+/**
+ * growable, sorted sequence of character offsets (newline positions) with binary search lookups. The offsets are
+ * kept compact in blocks: per block the first offset as long (the block prefix), per offset an unsigned int relative
+ * to it - about 4 bytes a line instead of a boxed object per line. A block spanning more than 4 GB is widened to
+ * long offsets.
+ * A single writer may append, while other threads read - the volatile fields make sure readers never see a size
+ * beyond the arrays.
+ */
+class LineOffsets {
+
+    private static final int BLOCK_SHIFT = 7;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final long MAX_DELTA = 0xFFFF_FFFFL;
+
+    private volatile long[] blockStarts = new long[1];
+    private volatile long[][] wideBlocks = new long[1][];
+    private volatile int[] deltas = new int[BLOCK_SIZE];
+    private volatile int size;
+
+    void add(long offset) {
+        var index = size;
+        if (index == deltas.length) {
+            grow();
+        }
+        var block = index >> BLOCK_SHIFT;
+        if ((index & BLOCK_MASK) == 0) {
+            blockStarts[block] = offset;
+        }
+        var delta = offset - blockStarts[block];
+        if (delta > MAX_DELTA && wideBlocks[block] == null) {
+            widen(block, index);
+        }
+        var wide = wideBlocks[block];
+        if (wide == null) {
+            deltas[index] = (int) delta;
+        } else {
+            wide[index & BLOCK_MASK] = offset;
+        }
+        size = index + 1;
+    }
+
+    private void grow() {
+        var blocks = blockStarts.length + (blockStarts.length >> 1) + 1;
+        blockStarts = Arrays.copyOf(blockStarts, blocks);
+        wideBlocks = Arrays.copyOf(wideBlocks, blocks);
+        deltas = Arrays.copyOf(deltas, blocks << BLOCK_SHIFT);
+    }
+
+    /**
+     * copies the block's offsets so far to longs - published as new array, so readers see it complete.
+     */
+    private void widen(int block, int index) {
+        var wide = new long[BLOCK_SIZE];
+        for (int i = block << BLOCK_SHIFT; i < index; i++) {
+            wide[i & BLOCK_MASK] = get(i);
+        }
+        var widened = wideBlocks.clone();
+        widened[block] = wide;
+        wideBlocks = widened;
+    }
+
+    long get(int index) {
+        var block = index >> BLOCK_SHIFT;
+        var wide = wideBlocks[block];
+        if (wide != null) {
+            return wide[index & BLOCK_MASK];
+        }
+        return blockStarts[block] + Integer.toUnsignedLong(deltas[index]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * index of the first offset, that is greater or equal to the given position (size, if none) - binary search over
+     * the block prefixes first, then within the block.
+     */
+    int firstIndexAtOrAfter(long position) {
+        var size = this.size;
+        var blockStarts = this.blockStarts;
+        int low = 0;
+        int high = (size + BLOCK_MASK) >> BLOCK_SHIFT;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blockStarts[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == 0) {
+            return 0;
+        }
+        low = ((low - 1) << BLOCK_SHIFT) + 1;
+        high = Math.min(low + BLOCK_MASK, size);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (get(mid) < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    int countBetween(long from, long to) {
+        return firstIndexAtOrAfter(to) - firstIndexAtOrAfter(from);
+    }
+}
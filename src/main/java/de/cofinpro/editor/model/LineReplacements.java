@@ -0,0 +1,15 @@
+package de.cofinpro.editor.model;
+
+/**
+ * new contents for count lines in ascending order - the result of a replace-all with the number of its matches.
+ */
+record LineReplacements(int[] lines, CharSequence[] contents, int count, int matches) {
+
+    int firstLine() {
+        return lines[0];
+    }
+
+    int lastLine() {
+        return lines[count - 1];
+    }
+}
@@ -0,0 +1,75 @@
+package de.cofinpro.editor.model;
+
+import java.util.Arrays;
+
+/**
+ * version counters of the lines - a line's version changes whenever its content may have changed, so that caches of
+ * anything derived from a line (its rendered text) can be validated by one comparison. Only recently changed lines
+ * keep a version of their own, in a direct mapped table like the one of LineColumns - all others share a version:
+ * lines above the topmost line insertion or removal the base version, those from there on the tail version.
+ * Evicting a line from the table renews both, so that a version is never handed out twice for a line.
+ */
+class LineVersions implements LineChangeListener {
+
+    private static final int SLOTS = 1 << 8;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int NONE = -1;
+
+    private final int[] slotLines = new int[SLOTS];
+    private final long[] slotVersions = new long[SLOTS];
+    private long last;
+    private long base;
+    private long tail;
+    private int tailStart = Integer.MAX_VALUE;
+
+    LineVersions() {
+        Arrays.fill(slotLines, NONE);
+    }
+
+    @Override
+    public void linesChanged(int line, int removed, int added) {
+        if (removed != added || added >= SLOTS) {
+            shifted(line);
+            return;
+        }
+        for (int i = line; i < line + added; i++) {
+            var slot = i & SLOT_MASK;
+            if (slotLines[slot] != NONE && slotLines[slot] != i) {
+                base = ++last;
+                tail = ++last;
+            }
+            slotLines[slot] = i;
+            slotVersions[slot] = ++last;
+        }
+    }
+
+    /**
+     * all lines from the given one on moved - or were replaced.
+     */
+    private void shifted(int line) {
+        if (line <= 0) {
+            Arrays.fill(slotLines, NONE);
+            base = ++last;
+            tailStart = Integer.MAX_VALUE;
+            return;
+        }
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (slotLines[slot] >= line) {
+                slotLines[slot] = NONE;
+            }
+        }
+        tailStart = Math.min(tailStart, line);
+        tail = ++last;
+    }
+
+    /**
+     * version of the line index.
+     */
+    long version(int line) {
+        var slot = line & SLOT_MASK;
+        if (slotLines[slot] == line) {
+            return slotVersions[slot];
+        }
+        return line >= tailStart ? tail : base;
+    }
+}
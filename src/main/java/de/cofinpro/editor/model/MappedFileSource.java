@@ -0,0 +1,366 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.event.Progress;
+import de.cofinpro.editor.event.Workers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * read-only text source on a memory mapped file. The newline index is built by a worker thread - until it is
+ * done, the source only exposes the prefix of complete lines indexed so far, so the first screen can be shown right
+ * away. Characters are only created for the ranges asked for - decoded as UTF-8 like a file read into memory, with
+ * line breaks normalized alike: a \r before a \n is hidden (it has no char offset), a single \r reads as \n.
+ * Char offsets are mapped to file positions by checkpoints every few KB, where no sequence is cut: in between, an
+ * interval of ASCII chars is mapped by arithmetic, one of well-formed sequences by counting lead bytes - only one
+ * with malformed bytes (or still being indexed) is decoded from its checkpoint.
+ * The file channel is kept open, so that unchanged ranges can be transferred on save - even after the file itself
+ * was replaced. Ranges with a \r or malformed bytes are written as text, so that the file is saved like one read into
+ * memory - with normalized line breaks and replacement characters.
+ */
+class MappedFileSource implements TextSource, Closeable {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long PUBLISH_INTERVAL = 1L << 16;
+    private static final long PROGRESS_MILLIS = 50;
+    private static final long CHECKPOINT_BYTES = 1L << 12;
+    private static final int FOUR_BYTE_LEAD = 0xf0;
+    private static final byte RETURN = '\r';
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long fileLength;
+    private final LineOffsets newlines = new LineOffsets();
+    private final LineOffsets checkpointOffsets = new LineOffsets();
+    private final LineOffsets checkpointPositions = new LineOffsets();
+    private final LineOffsets malformedIntervals = new LineOffsets();
+    private final LineOffsets returnIntervals = new LineOffsets();
+    private Thread indexer;
+    private volatile long indexedLength;
+    private volatile boolean indexed;
+
+    private MappedFileSource(FileChannel channel, MappedByteBuffer[] segments, long fileLength) {
+        this.channel = channel;
+        this.segments = segments;
+        this.fileLength = fileLength;
+    }
+
+    static MappedFileSource open(Path file) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            var size = channel.size();
+            var segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                var position = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(SEGMENT_SIZE, size - position));
+            }
+            var source = new MappedFileSource(channel, segments, size);
+            source.indexer = Workers.start("line-indexer", source::index);
+            return source;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * decodes the file once to index the char offsets of its newlines and of the checkpoints - ASCII bytes are
+     * counted without the decoder.
+     */
+    private void index() {
+        var decoder = new Utf8Decoder();
+        var decoded = new StringBuilder(2);
+        long chars = 0;
+        long position = 0;
+        long checkpointPosition = 0;
+        long malformed = 0;
+        var returns = false;
+        checkpointPositions.add(0);
+        checkpointOffsets.add(0);
+        for (var segment : segments) {
+            var limit = segment.limit();
+            var i = 0;
+            while (i < limit) {
+                var stop = (int) Math.max(i + 1, Math.min(limit, checkpointPosition + CHECKPOINT_BYTES - position));
+                for (; i < stop; i++) {
+                    var value = segment.get(i);
+                    if (value == RETURN) {
+                        decoded.setLength(0);
+                        decoder.finish(decoded);
+                        chars += decoded.length();
+                        returns = true;
+                        if (!isHiddenReturn(position + i)) {
+                            newline(++chars);
+                        }
+                        continue;
+                    }
+                    if (value >= 0 && !decoder.isPending()) {
+                        chars++;
+                    } else {
+                        decoded.setLength(0);
+                        decoder.decode(value & 0xff, decoded);
+                        chars += decoded.length();
+                    }
+                    if (value == NEWLINE) {
+                        newline(chars);
+                    }
+                }
+                if (position + i - checkpointPosition >= CHECKPOINT_BYTES && !decoder.isPending()) {
+                    checkpointPosition = position + i;
+                    addCheckpoint(chars, checkpointPosition, decoder.malformedCount() > malformed, returns);
+                    malformed = decoder.malformedCount();
+                    returns = false;
+                }
+            }
+            position += limit;
+        }
+        decoded.setLength(0);
+        decoder.finish(decoded);
+        chars += decoded.length();
+        addCheckpoint(chars, fileLength, decoder.malformedCount() > malformed, returns);
+        indexedLength = chars;
+        indexed = true;
+    }
+
+    /**
+     * indexes the newline ending at the char count - the lines up to it are published every so often.
+     */
+    private void newline(long chars) {
+        newlines.add(chars - 1);
+        if (chars - indexedLength >= PUBLISH_INTERVAL) {
+            indexedLength = chars;
+        }
+    }
+
+    /**
+     * ends the interval of the last checkpoint - published in the order readers look it up.
+     */
+    private void addCheckpoint(long offset, long position, boolean malformed, boolean returns) {
+        if (malformed) {
+            malformedIntervals.add(checkpointOffsets.size() - 1);
+        }
+        if (returns) {
+            returnIntervals.add(checkpointOffsets.size() - 1);
+        }
+        checkpointPositions.add(position);
+        checkpointOffsets.add(offset);
+    }
+
+    /**
+     * true for the \r of a \r\n - it has no char of its own.
+     */
+    private boolean isHiddenReturn(long position) {
+        return byteAt(position) == RETURN && position + 1 < fileLength && byteAt(position + 1) == NEWLINE;
+    }
+
+    long fileLength() {
+        return fileLength;
+    }
+
+    boolean isIndexed() {
+        return indexed;
+    }
+
+    void awaitIndexed() {
+        try {
+            indexer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * waits for the index, reporting the share of the file indexed - the index runs to its end, even if the
+     * progress is cancelled.
+     */
+    void awaitIndexed(Progress progress) {
+        try {
+            while (!indexed) {
+                progress.report(indexedLength, fileLength);
+                indexer.join(PROGRESS_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public long length() {
+        return indexedLength;
+    }
+
+    @Override
+    public int newlinesBetween(long from, long to) {
+        return newlines.countBetween(from, to);
+    }
+
+    @Override
+    public long newlineOffset(long from, int n) {
+        return newlines.get(newlines.firstIndexAtOrAfter(from) + n - 1);
+    }
+
+    /**
+     * decodes the range from the file position of its first char on - a range starting with the low half of a
+     * surrogate pair decodes the whole pair and drops the high half.
+     */
+    @Override
+    public void appendTo(StringBuilder target, long from, long to) {
+        var position = positionOf(from);
+        var skipped = 0;
+        if (position < 0) {
+            position = -position - 1;
+            skipped = 1;
+        }
+        var start = target.length();
+        var end = start + skipped + (int) (to - from);
+        var decoder = new Utf8Decoder();
+        while (target.length() < end && position < fileLength) {
+            var value = byteAt(position++);
+            if (value == RETURN) {
+                decoder.finish(target);
+                if (!isHiddenReturn(position - 1)) {
+                    target.append(NEWLINE);
+                }
+            } else if (value >= 0 && !decoder.isPending()) {
+                target.append((char) value);
+            } else {
+                decoder.decode(value & 0xff, target);
+            }
+        }
+        if (target.length() < end) {
+            decoder.finish(target);
+        }
+        target.setLength(end);
+        target.delete(start, start + skipped);
+    }
+
+    /**
+     * transfers the file's bytes of the range - a range cutting a surrogate pair, or whose bytes are not just the
+     * UTF-8 of its chars, is written as text instead, chunk by chunk, so that the writer joins the halves with those
+     * of the neighbouring pieces.
+     */
+    @Override
+    public void writeTo(AtomicFileWriter writer, long from, long to) throws IOException {
+        var start = positionOf(from);
+        var end = positionOf(to);
+        if (start >= 0 && end >= 0 && isVerbatim(from, to)) {
+            writer.transfer(channel, start, end - start);
+            return;
+        }
+        var chunk = new StringBuilder();
+        for (long offset = from; offset < to; offset += CHECKPOINT_BYTES) {
+            chunk.setLength(0);
+            appendTo(chunk, offset, Math.min(to, offset + CHECKPOINT_BYTES));
+            writer.write(chunk, 0, chunk.length());
+        }
+    }
+
+    /**
+     * file position of the char at the offset - -(position of the pair) - 1 for the low half of a surrogate pair.
+     */
+    private long positionOf(long offset) {
+        var checkpoint = checkpointOffsets.firstIndexAtOrAfter(offset + 1) - 1;
+        var chars = checkpointOffsets.get(checkpoint);
+        var position = checkpointPositions.get(checkpoint);
+        if (chars == offset) {
+            return position;
+        }
+        if (checkpoint + 1 == checkpointOffsets.size() || isMalformed(checkpoint)) {
+            return decodedPosition(position, chars, offset);
+        }
+        var nextPosition = checkpointPositions.get(checkpoint + 1);
+        if (checkpointOffsets.get(checkpoint + 1) - chars == nextPosition - position) {
+            return position + offset - chars; // ASCII only
+        }
+        return countedPosition(position, chars, offset);
+    }
+
+    /**
+     * true, if no interval the range touches holds a \r or malformed bytes - the one of the char at the range end
+     * included, as its position may be behind a hidden \r.
+     */
+    private boolean isVerbatim(long from, long to) {
+        var first = checkpointOffsets.firstIndexAtOrAfter(from + 1) - 1;
+        var last = checkpointOffsets.firstIndexAtOrAfter(to + 1) - 1;
+        return returnIntervals.countBetween(first, last + 1) == 0
+                && malformedIntervals.countBetween(first, last + 1) == 0;
+    }
+
+    private boolean isMalformed(int checkpoint) {
+        var index = malformedIntervals.firstIndexAtOrAfter(checkpoint);
+        return index < malformedIntervals.size() && malformedIntervals.get(index) == checkpoint;
+    }
+
+    /**
+     * walks well-formed UTF-8 by its lead bytes - a four byte sequence is a surrogate pair of two chars, a hidden \r
+     * none.
+     */
+    private long countedPosition(long position, long chars, long offset) {
+        while (true) {
+            var value = byteAt(position) & 0xff;
+            if (!Utf8Decoder.isContinuation(value)) {
+                if (chars == offset) {
+                    return position;
+                }
+                if (isHiddenReturn(position)) {
+                    position++;
+                    continue;
+                }
+                var width = value >= FOUR_BYTE_LEAD ? 2 : 1;
+                if (chars + width > offset) {
+                    return -position - 1;
+                }
+                chars += width;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * walks by decoding - a sequence cut off by a byte, that does not continue it, ends before that byte.
+     */
+    private long decodedPosition(long position, long chars, long offset) {
+        var decoder = new Utf8Decoder();
+        var decoded = new StringBuilder(2);
+        var sequenceStart = position;
+        while (chars < offset) {
+            if (!decoder.isPending()) {
+                sequenceStart = position;
+            }
+            decoded.setLength(0);
+            if (position == fileLength) {
+                if (!decoder.isPending()) {
+                    throw new IndexOutOfBoundsException("offset " + offset);
+                }
+                decoder.finish(decoded);
+            } else if (decoder.isPending() && !Utf8Decoder.isContinuation(byteAt(position) & 0xff)) {
+                decoder.finish(decoded);
+            } else if (isHiddenReturn(position)) {
+                position++;
+            } else {
+                decoder.decode(byteAt(position++) & 0xff, decoded);
+            }
+            chars += decoded.length();
+        }
+        return chars == offset ? position : -sequenceStart - 1;
+    }
+
+    private byte byteAt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // a read-only channel loses nothing - and logging would write into the screen of the raw terminal
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package de.cofinpro.editor.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * parallel scan of all lines for the matches of a search text: the line range is split recursively into chunks on
+ * the common fork join pool. The matches of each chunk are published on their own, so that the nearest match in
+ * search direction is found as soon as the chunks up to it are scanned. Chunks are cut at line boundaries and
+ * matches never span lines - so no match can cross a chunk boundary. The scan is cancelled, as soon as the caller
+ * signals an interrupt (a key press) while waiting. Lines are read by the buffer's line reader taken on submit, so
+ * that a document growing by a background load meanwhile is not raced with.
+ */
+class ParallelScan {
+
+    static final long NOT_FOUND = -1;
+    static final long CANCELLED = -2;
+    private static final int CHUNK_LINES = 1 << 14;
+    private static final long POLL_MILLIS = 10;
+
+    private final IntFunction<CharSequence> lines;
+    private final HorspoolMatcher matcher;
+    private final int lineCount;
+    private final List<CompletableFuture<long[]>> chunks;
+    private final ForkJoinTask<Void> task;
+    private volatile boolean cancelled;
+
+    /**
+     * @param lines     reads the lines to scan - as they were, when lineCount was taken
+     * @param lineCount number of lines to scan
+     */
+    ParallelScan(IntFunction<CharSequence> lines, HorspoolMatcher matcher, int lineCount) {
+        this.lines = lines;
+        this.matcher = matcher;
+        this.lineCount = lineCount;
+        chunks = Stream.generate(CompletableFuture<long[]>::new)
+                .limit((lineCount + CHUNK_LINES - 1) / CHUNK_LINES)
+                .toList();
+        task = ForkJoinPool.commonPool().submit(new ChunkTask(0, chunks.size()));
+    }
+
+    int lineCount() {
+        return lineCount;
+    }
+
+    boolean isDone() {
+        return task.isDone();
+    }
+
+    /**
+     * first packed match at or after the packed position - NOT_FOUND or CANCELLED else.
+     */
+    long next(long packed, BooleanSupplier interrupted) {
+        for (int chunk = chunkOf(packed); chunk < chunks.size(); chunk++) {
+            var matches = await(chunk, interrupted);
+            if (matches == null) {
+                return CANCELLED;
+            }
+            var index = SearchIndex.firstIndexAtOrAfter(matches, matches.length, packed);
+            if (index < matches.length) {
+                return matches[index];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * last packed match before the packed bound - NOT_FOUND or CANCELLED else.
+     */
+    long previous(long bound, BooleanSupplier interrupted) {
+        for (int chunk = Math.min(chunkOf(bound), chunks.size() - 1); chunk >= 0; chunk--) {
+            var matches = await(chunk, interrupted);
+            if (matches == null) {
+                return CANCELLED;
+            }
+            var index = SearchIndex.firstIndexAtOrAfter(matches, matches.length, bound) - 1;
+            if (index >= 0) {
+                return matches[index];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * all matches in order - only to be called, when the scan is done.
+     */
+    long[] matches() {
+        var results = chunks.stream().map(CompletableFuture::join).toList();
+        var all = new long[results.stream().mapToInt(matches -> matches.length).sum()];
+        var size = 0;
+        for (var matches : results) {
+            System.arraycopy(matches, 0, all, size, matches.length);
+            size += matches.length;
+        }
+        return all;
+    }
+
+    void cancel() {
+        cancelled = true;
+        task.quietlyJoin();
+    }
+
+    private long[] await(int chunk, BooleanSupplier interrupted) {
+        while (true) {
+            try {
+                return chunks.get(chunk).get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (interrupted.getAsBoolean()) {
+                    cancel();
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                return null;
+            } catch (CancellationException e) {
+                return null;
+            } catch (ExecutionException e) {
+                cancel();
+                throw new IllegalStateException("search failed", e.getCause());
+            }
+        }
+    }
+
+    private int chunkOf(long packed) {
+        return (int) (packed >>> 32) / CHUNK_LINES;
+    }
+
+    private long[] scanChunk(int chunk) {
+        var matches = new long[16];
+        var size = 0;
+        var end = Math.min(lineCount, (chunk + 1) * CHUNK_LINES);
+        for (int line = chunk * CHUNK_LINES; line < end && !cancelled; line++) {
+            var text = lines.apply(line);
+            var column = matcher.indexOf(text, 0);
+            while (column >= 0) {
+                if (size == matches.length) {
+                    matches = Arrays.copyOf(matches, size * 2);
+                }
+                matches[size++] = (long) line << 32 | column;
+                column = matcher.indexOf(text, column + 1);
+            }
+        }
+        return Arrays.copyOf(matches, size);
+    }
+
+    private class ChunkTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        private ChunkTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                for (int i = from; i < to; i++) {
+                    chunks.get(i).cancel(false);
+                }
+            } else if (to - from > 1) {
+                var middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(from, middle), new ChunkTask(middle, to));
+            } else {
+                try {
+                    chunks.get(from).complete(scanChunk(from));
+                } catch (RuntimeException e) {
+                    chunks.get(from).completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
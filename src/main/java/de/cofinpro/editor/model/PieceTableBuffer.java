@@ -0,0 +1,480 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.event.Progress;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+
+/**
+ * piece table implementation of the text buffer: the loaded contents are kept untouched in an original source,
+ * all typed text is appended to an add source. The document is the in-order sequence of pieces (ranges into one
+ * of the sources), held in a treap whose nodes are augmented by subtree length and newline count - so that edits as
+ * well as line lookups are O(log n) in the number of pieces.
+ * Files from LARGE_FILE_THRESHOLD bytes on are not read into memory but memory mapped as original source. While its
+ * line index is still built by a worker, the document is the single piece of lines indexed so far - it only
+ * grows by followLoading() on the editing thread. Scans on other threads read a line reader, that holds on to the
+ * pieces of the moment - so that they neither see the document grow nor race with it. The first edit waits for the
+ * index to be complete. With compression they are decoded into deflated blocks instead - for hosts without the
+ * memory to map (or page in) a file of several GB. The add source with all edits stays uncompressed.
+ * Saving streams the pieces to a temp file, that atomically replaces the target: only the dirty regions - pieces of
+ * the add source or an in-memory original - are encoded, unchanged ranges of a mapped file are copied by transferTo.
+ */
+public class PieceTableBuffer implements TextBuffer {
+
+    private static final char NEWLINE = '\n';
+    private static final long LARGE_FILE_THRESHOLD = 1L << 24;
+
+    private final boolean compressed;
+    private TextSource original = CharSource.appendable();
+    private CharSource added = CharSource.appendable();
+    private volatile MappedFileSource loading;
+    private Piece root;
+
+    public PieceTableBuffer() {
+        this(false);
+    }
+
+    /**
+     * @param compressed keeps large files in compressed blocks - instead of mapping them
+     */
+    public PieceTableBuffer(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    @Override
+    public int lineCount() {
+        return newlines(root) + 1;
+    }
+
+    @Override
+    public int lineLength(int line) {
+        return (int) (lineEnd(line) - lineStart(line));
+    }
+
+    @Override
+    public String substring(int line, int from, int to) {
+        var start = lineStart(line);
+        var length = lineEnd(line) - start;
+        if (length <= from) {
+            return "";
+        }
+        var builder = new StringBuilder();
+        appendRange(root, 0, start + from, start + Math.min(length, to), builder);
+        return builder.toString();
+    }
+
+    @Override
+    public CharSequence line(int line) {
+        return line(root, line);
+    }
+
+    private static CharSequence line(Piece root, int line) {
+        var builder = new StringBuilder();
+        appendRange(root, 0, lineStart(root, line), lineEnd(root, line), builder);
+        return builder;
+    }
+
+    /**
+     * reads the lines of the current pieces - edits replace the root, but they wait for scans to be settled.
+     */
+    @Override
+    public IntFunction<CharSequence> lineReader() {
+        var document = root;
+        return line -> line(document, line);
+    }
+
+    @Override
+    public void insert(int line, int column, char character) {
+        awaitLoaded();
+        var addedStart = added.length();
+        added.append(character);
+        attach(lineStart(line) + column, addedStart);
+    }
+
+    @Override
+    public void insert(int line, int column, CharSequence text) {
+        awaitLoaded();
+        if (text.isEmpty()) {
+            return;
+        }
+        var addedStart = added.length();
+        added.append(text);
+        attach(lineStart(line) + column, addedStart);
+    }
+
+    @Override
+    public void deleteCharAt(int line, int column) {
+        awaitLoaded();
+        delete(lineStart(line) + column, 1);
+    }
+
+    @Override
+    public void delete(int line, int column, int length) {
+        awaitLoaded();
+        delete(lineStart(line) + column, length);
+    }
+
+    @Override
+    public void splitLine(int line, int column) {
+        awaitLoaded();
+        var addedStart = added.length();
+        added.append(NEWLINE);
+        attach(lineStart(line) + column, addedStart);
+    }
+
+    @Override
+    public void joinWithNext(int line) {
+        awaitLoaded();
+        if (line < newlines(root)) {
+            delete(lineEnd(line), 1);
+        }
+    }
+
+    /**
+     * rebuilds the piece sequence in one pass: slices of the old pieces between the replaced lines and new pieces
+     * for their contents - then builds a balanced treap of them (priorities decreasing with depth).
+     */
+    @Override
+    public void replaceLines(int[] lines, CharSequence[] contents, int count) {
+        awaitLoaded();
+        var pieces = new ArrayList<Piece>();
+        long position = 0;
+        for (int i = 0; i < count; i++) {
+            slice(root, 0, position, lineStart(lines[i]), pieces);
+            var addedStart = added.length();
+            added.append(contents[i]);
+            if (added.length() > addedStart) {
+                pieces.add(new Piece(added, addedStart, added.length() - addedStart));
+            }
+            position = lineEnd(lines[i]);
+        }
+        slice(root, 0, position, length(root), pieces);
+        root = build(pieces, 0, pieces.size(), 0);
+    }
+
+    @Override
+    public void replaceBy(String contents) {
+        var normalized = contents.indexOf('\r') < 0
+                ? contents
+                : contents.replace("\r\n", "\n").replace('\r', NEWLINE);
+        replaceBy(new CharSource(normalized));
+    }
+
+    @Override
+    public long load(Path file, Progress progress) throws IOException {
+        if (Files.size(file) < LARGE_FILE_THRESHOLD) {
+            return TextBuffer.super.load(file, progress);
+        }
+        if (compressed) {
+            var source = CompressedSource.load(file, progress);
+            replaceBy(source);
+            return source.fileLength();
+        }
+        var source = MappedFileSource.open(file);
+        replaceBy(source);
+        loading = source;
+        return source.fileLength();
+    }
+
+    private void replaceBy(TextSource source) {
+        close();
+        original = source;
+        added = CharSource.appendable();
+        loading = null;
+        root = singlePiece(source);
+    }
+
+    private static Piece singlePiece(TextSource source) {
+        return source.length() == 0 ? null : new Piece(source, 0, source.length());
+    }
+
+    /**
+     * while the mapped original is indexed, the document grows with the indexed prefix - as single piece.
+     */
+    @Override
+    public void followLoading() {
+        if (loading == null) {
+            return;
+        }
+        var complete = loading.isIndexed();
+        if (length(root) != loading.length()) {
+            root = singlePiece(loading);
+        }
+        if (complete) {
+            loading = null;
+        }
+    }
+
+    @Override
+    public void awaitLoaded() {
+        if (loading != null) {
+            loading.awaitIndexed();
+            followLoading();
+        }
+    }
+
+    /**
+     * waits for the mapped original's index - the document itself only grows on the next followLoading().
+     */
+    @Override
+    public void awaitLoaded(Progress progress) {
+        var source = loading;
+        if (source != null) {
+            source.awaitIndexed(progress);
+        }
+    }
+
+    @Override
+    public boolean isLoaded() {
+        var source = loading;
+        return source == null || source.isIndexed();
+    }
+
+    @Override
+    public void close() {
+        if (original instanceof MappedFileSource mapped) {
+            mapped.close();
+        }
+    }
+
+    @Override
+    public void save(Path file) throws IOException {
+        save(file, Progress.NONE);
+    }
+
+    /**
+     * reports the characters written after each piece - cancelling between two pieces discards the temp file.
+     */
+    @Override
+    public void save(Path file, Progress progress) throws IOException {
+        var document = root;
+        var source = loading;
+        if (source != null) { // not edited yet - the document is the whole mapped file, once it is indexed
+            source.awaitIndexed();
+            document = singlePiece(source);
+        }
+        try (var writer = new AtomicFileWriter(file, StandardCharsets.UTF_8)) {
+            writePieces(document, writer, 0, length(document), progress);
+            writer.commit();
+        }
+    }
+
+    /**
+     * @return number of characters written, when the piece's subtree is written
+     */
+    private static long writePieces(Piece piece, AtomicFileWriter writer, long written, long total,
+                                    Progress progress) throws IOException {
+        if (piece == null) {
+            return written;
+        }
+        written = writePieces(piece.left, writer, written, total, progress);
+        progress.checkCancelled();
+        piece.source.writeTo(writer, piece.start, piece.start + piece.length);
+        written += piece.length;
+        progress.report(written, total);
+        return writePieces(piece.right, writer, written, total, progress);
+    }
+
+    private long lineStart(int line) {
+        return lineStart(root, line);
+    }
+
+    private long lineEnd(int line) {
+        return lineEnd(root, line);
+    }
+
+    private static long lineStart(Piece root, int line) {
+        return line == 0 ? 0 : newlineOffset(root, line) + 1;
+    }
+
+    private static long lineEnd(Piece root, int line) {
+        return line == newlines(root) ? length(root) : newlineOffset(root, line + 1);
+    }
+
+    /**
+     * document offset of the n-th (1-based) newline character.
+     */
+    private static long newlineOffset(Piece root, int n) {
+        var piece = root;
+        long base = 0;
+        while (piece != null) {
+            var leftNewlines = newlines(piece.left);
+            if (n <= leftNewlines) {
+                piece = piece.left;
+                continue;
+            }
+            n -= leftNewlines;
+            base += length(piece.left);
+            if (n <= piece.newlines) {
+                return base + piece.source.newlineOffset(piece.start, n) - piece.start;
+            }
+            n -= piece.newlines;
+            base += piece.length;
+            piece = piece.right;
+        }
+        throw new IndexOutOfBoundsException("newline " + n);
+    }
+
+    /**
+     * inserts the text appended to the add source since addedStart at the given document offset.
+     */
+    private void attach(long offset, long addedStart) {
+        var addedLength = added.length() - addedStart;
+        var parts = split(root, offset);
+        var previous = rightmost(parts[0]);
+        if (previous != null && previous.source == added && previous.start + previous.length == addedStart) {
+            extendRightmost(parts[0], addedLength);
+            root = merge(parts[0], parts[1]);
+        } else {
+            root = merge(merge(parts[0], new Piece(added, addedStart, addedLength)), parts[1]);
+        }
+    }
+
+    private void delete(long offset, long length) {
+        var parts = split(root, offset);
+        var tail = split(parts[1], length);
+        root = merge(parts[0], tail[1]);
+    }
+
+    private static void appendRange(Piece piece, long base, long from, long to, StringBuilder target) {
+        if (piece == null || from >= base + piece.subtreeLength || to <= base) {
+            return;
+        }
+        appendRange(piece.left, base, from, to, target);
+        var pieceBase = base + length(piece.left);
+        var start = Math.max(from, pieceBase);
+        var end = Math.min(to, pieceBase + piece.length);
+        if (start < end) {
+            piece.source.appendTo(target, piece.start + start - pieceBase, piece.start + end - pieceBase);
+        }
+        appendRange(piece.right, pieceBase + piece.length, from, to, target);
+    }
+
+    private static void slice(Piece piece, long base, long from, long to, List<Piece> target) {
+        if (piece == null || from >= base + piece.subtreeLength || to <= base) {
+            return;
+        }
+        slice(piece.left, base, from, to, target);
+        var pieceBase = base + length(piece.left);
+        var start = Math.max(from, pieceBase);
+        var end = Math.min(to, pieceBase + piece.length);
+        if (start < end) {
+            target.add(new Piece(piece.source, piece.start + start - pieceBase, end - start));
+        }
+        slice(piece.right, pieceBase + piece.length, from, to, target);
+    }
+
+    private static Piece build(List<Piece> pieces, int from, int to, int depth) {
+        if (from >= to) {
+            return null;
+        }
+        var middle = (from + to) >>> 1;
+        var piece = pieces.get(middle);
+        piece.priority = Integer.MAX_VALUE - depth;
+        piece.left = build(pieces, from, middle, depth + 1);
+        piece.right = build(pieces, middle + 1, to, depth + 1);
+        return piece.update();
+    }
+
+    /**
+     * splits the treap into one containing the first offset characters and one containing the rest - a piece
+     * spanning the offset is cut in two.
+     */
+    private static Piece[] split(Piece piece, long offset) {
+        if (piece == null) {
+            return new Piece[] {null, null};
+        }
+        var leftLength = length(piece.left);
+        if (offset <= leftLength) {
+            var parts = split(piece.left, offset);
+            piece.left = parts[1];
+            return new Piece[] {parts[0], piece.update()};
+        }
+        if (offset >= leftLength + piece.length) {
+            var parts = split(piece.right, offset - leftLength - piece.length);
+            piece.right = parts[0];
+            return new Piece[] {piece.update(), parts[1]};
+        }
+        var inner = offset - leftLength;
+        var tail = new Piece(piece.source, piece.start + inner, piece.length - inner);
+        var right = piece.right;
+        piece.right = null;
+        piece.resize(inner);
+        return new Piece[] {piece.update(), merge(tail, right)};
+    }
+
+    private static Piece merge(Piece left, Piece right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return left.update();
+        }
+        right.left = merge(left, right.left);
+        return right.update();
+    }
+
+    private static Piece rightmost(Piece piece) {
+        while (piece != null && piece.right != null) {
+            piece = piece.right;
+        }
+        return piece;
+    }
+
+    private static void extendRightmost(Piece piece, long length) {
+        if (piece.right == null) {
+            piece.resize(piece.length + length);
+        } else {
+            extendRightmost(piece.right, length);
+        }
+        piece.update();
+    }
+
+    private static long length(Piece piece) {
+        return piece == null ? 0 : piece.subtreeLength;
+    }
+
+    private static int newlines(Piece piece) {
+        return piece == null ? 0 : piece.subtreeNewlines;
+    }
+
+    private static final class Piece {
+        private final TextSource source;
+        private final long start;
+        private int priority = ThreadLocalRandom.current().nextInt();
+        private long length;
+        private int newlines;
+        private Piece left;
+        private Piece right;
+        private long subtreeLength;
+        private int subtreeNewlines;
+
+        private Piece(TextSource source, long start, long length) {
+            this.source = source;
+            this.start = start;
+            resize(length);
+            update();
+        }
+
+        private void resize(long newLength) {
+            length = newLength;
+            newlines = source.newlinesBetween(start, start + newLength);
+        }
+
+        private Piece update() {
+            subtreeLength = PieceTableBuffer.length(left) + length + PieceTableBuffer.length(right);
+            subtreeNewlines = PieceTableBuffer.newlines(left) + newlines + PieceTableBuffer.newlines(right);
+            return this;
+        }
+    }
+}
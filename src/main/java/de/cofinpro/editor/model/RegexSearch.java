@@ -0,0 +1,118 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.terminal.Cursor;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * regular expression search and replace, streaming line by line over the buffer with one reset matcher - the
+ * buffer contents are never joined to one String. Matches do not span lines.
+ */
+class RegexSearch {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INTERRUPT_CHECK_MASK = (1 << 10) - 1;
+
+    private final TextBuffer buffer;
+    private final Matcher matcher;
+
+    RegexSearch(TextBuffer buffer, Pattern pattern) {
+        this.buffer = buffer;
+        matcher = pattern.matcher("");
+    }
+
+    /**
+     * first match at or after the given position - interrupted is asked every 1024 lines, whether to stop.
+     */
+    Optional<Cursor.Position> next(Cursor.Position from, BooleanSupplier interrupted) {
+        var line = from.line() - 1;
+        if (matcher.reset(buffer.line(line)).find(from.column() - 1)) {
+            return Optional.of(new Cursor.Position(from.line(), matcher.start() + 1));
+        }
+        for (int i = line + 1; i < buffer.lineCount(); i++) {
+            if ((i & INTERRUPT_CHECK_MASK) == 0 && interrupted.getAsBoolean()) {
+                return Optional.empty();
+            }
+            if (matcher.reset(buffer.line(i)).find()) {
+                return Optional.of(new Cursor.Position(i + 1, matcher.start() + 1));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * last match ending before the given position.
+     */
+    Optional<Cursor.Position> previous(Cursor.Position from, BooleanSupplier interrupted) {
+        for (int i = from.line() - 1; i >= 0; i--) {
+            if ((i & INTERRUPT_CHECK_MASK) == 0 && interrupted.getAsBoolean()) {
+                return Optional.empty();
+            }
+            var end = i == from.line() - 1 ? from.column() - 1 : Integer.MAX_VALUE;
+            var start = lastMatchStart(buffer.line(i), end);
+            if (start >= 0) {
+                return Optional.of(new Cursor.Position(i + 1, start + 1));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private int lastMatchStart(CharSequence line, int end) {
+        var start = -1;
+        matcher.reset(line);
+        while (matcher.find() && matcher.end() <= end) {
+            start = matcher.start();
+        }
+        return start;
+    }
+
+    /**
+     * the indexes of the lines in [from, to), that contain a match - ascending.
+     */
+    int[] matchingLines(int from, int to) {
+        var lines = new int[INITIAL_CAPACITY];
+        var count = 0;
+        for (int i = from; i < to; i++) {
+            if (matcher.reset(buffer.line(i)).find()) {
+                if (count == lines.length) {
+                    lines = Arrays.copyOf(lines, count * 2);
+                }
+                lines[count++] = i;
+            }
+        }
+        return Arrays.copyOf(lines, count);
+    }
+
+    /**
+     * computes the new contents of all lines with matches - they are collected first and handed to the buffer as one
+     * batch, so that an invalid replacement leaves the buffer untouched.
+     */
+    LineReplacements replaceAll(String replacement) {
+        var changedLines = new int[INITIAL_CAPACITY];
+        var contents = new CharSequence[INITIAL_CAPACITY];
+        var changed = 0;
+        var replaced = 0;
+        for (int i = 0; i < buffer.lineCount(); i++) {
+            if (!matcher.reset(buffer.line(i)).find()) {
+                continue;
+            }
+            var builder = new StringBuilder();
+            do {
+                matcher.appendReplacement(builder, replacement);
+                replaced++;
+            } while (matcher.find());
+            matcher.appendTail(builder);
+            if (changed == changedLines.length) {
+                changedLines = Arrays.copyOf(changedLines, changed * 2);
+                contents = Arrays.copyOf(contents, changed * 2);
+            }
+            changedLines[changed] = i;
+            contents[changed++] = builder;
+        }
+        return new LineReplacements(changedLines, contents, changed, replaced);
+    }
+}
@@ -0,0 +1,197 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.terminal.Cursor;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+/**
+ * cache of all match positions of the current search text: built by a Boyer-Moore-Horspool scan over all lines and
+ * kept valid on edits by rescanning only the changed lines. Positions are packed as (line << 32 | column) into a
+ * sorted long array, so next and previous match are binary searches.
+ * Large buffers are indexed by a ParallelScan, that already answers the first lookup with the nearest match while
+ * the rest of the buffer is still scanned. Edits have to wait for it to settle. A replaced document is not rescanned,
+ * the search text is forgotten instead - the next search starts a fresh index.
+ */
+class SearchIndex implements LineChangeListener {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int PARALLEL_SCAN_LINES = 1 << 16;
+
+    private final TextBuffer buffer;
+    private HorspoolMatcher matcher;
+    private String searchText;
+    private long[] matches = new long[INITIAL_CAPACITY];
+    private int size;
+    private int indexedLines;
+    private ParallelScan scan;
+
+    SearchIndex(TextBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    Optional<Cursor.Position> next(String text, Cursor.Position from, BooleanSupplier interrupted) {
+        if (!prepare(text)) {
+            return Optional.empty();
+        }
+        var packed = pack(from.line() - 1, from.column() - 1);
+        if (scan != null && !scan.isDone()) {
+            return scanned(scan.next(packed, interrupted));
+        }
+        var index = firstIndexAtOrAfter(matches, size, packed);
+        return index < size ? Optional.of(unpack(matches[index])) : Optional.empty();
+    }
+
+    /**
+     * last match ending before the given position.
+     */
+    Optional<Cursor.Position> previous(String text, Cursor.Position from, BooleanSupplier interrupted) {
+        if (!prepare(text)) {
+            return Optional.empty();
+        }
+        var bound = pack(from.line() - 1, Math.max(0, from.column() - text.length()));
+        if (scan != null && !scan.isDone()) {
+            return scanned(scan.previous(bound, interrupted));
+        }
+        var index = firstIndexAtOrAfter(matches, size, bound) - 1;
+        return index >= 0 ? Optional.of(unpack(matches[index])) : Optional.empty();
+    }
+
+    private Optional<Cursor.Position> scanned(long packed) {
+        if (packed == ParallelScan.CANCELLED) {
+            discardScan();
+        }
+        return packed >= 0 ? Optional.of(unpack(packed)) : Optional.empty();
+    }
+
+    /**
+     * to be called before the buffer changes: a finished scan is taken over, a running one is cancelled.
+     */
+    void settle() {
+        if (scan != null) {
+            if (scan.isDone()) {
+                installScan();
+            } else {
+                discardScan();
+            }
+        }
+    }
+
+    private void installScan() {
+        matches = scan.matches();
+        size = matches.length;
+        indexedLines = scan.lineCount();
+        scan = null;
+        catchUp();
+    }
+
+    private void discardScan() {
+        if (scan != null) {
+            scan.cancel();
+            scan = null;
+        }
+        searchText = null;
+        matcher = null;
+    }
+
+    @Override
+    public void linesChanged(int line, int removed, int added) {
+        if (matcher != null) {
+            replaceLines(line, removed, added);
+        }
+    }
+
+    @Override
+    public void documentReplaced(int removed, int added) {
+        discardScan();
+        size = 0;
+        indexedLines = 0;
+    }
+
+    private boolean prepare(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        if (!text.equals(searchText)) {
+            discardScan();
+            searchText = text;
+            matcher = new HorspoolMatcher(text);
+            size = 0;
+            indexedLines = 0;
+            var lineCount = buffer.lineCount();
+            if (lineCount >= PARALLEL_SCAN_LINES) {
+                scan = new ParallelScan(buffer.lineReader(), matcher, lineCount);
+            }
+        }
+        if (scan != null && scan.isDone()) {
+            installScan();
+        }
+        if (scan == null) {
+            catchUp();
+        }
+        return true;
+    }
+
+    private void catchUp() {
+        var lineCount = buffer.lineCount();
+        if (lineCount != indexedLines) { // first search or lines appended by a background load
+            var rescanned = Math.max(0, indexedLines - 1);
+            replaceLines(rescanned, indexedLines - rescanned, lineCount - rescanned);
+        }
+    }
+
+    private void replaceLines(int line, int removed, int added) {
+        var from = firstIndexAtOrAfter(matches, size, pack(line, 0));
+        var to = firstIndexAtOrAfter(matches, size, pack(line + removed, 0));
+        var tail = Arrays.copyOfRange(matches, to, size);
+        var shift = (long) (added - removed) << 32;
+        size = from;
+        for (int i = line; i < line + added; i++) {
+            scanLine(i);
+        }
+        ensureCapacity(size + tail.length);
+        for (var match : tail) {
+            matches[size++] = match + shift;
+        }
+        indexedLines += added - removed;
+    }
+
+    private void scanLine(int line) {
+        var text = buffer.line(line);
+        var column = matcher.indexOf(text, 0);
+        while (column >= 0) {
+            ensureCapacity(size + 1);
+            matches[size++] = pack(line, column);
+            column = matcher.indexOf(text, column + 1);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > matches.length) {
+            matches = Arrays.copyOf(matches, Math.max(capacity, matches.length + (matches.length >> 1)));
+        }
+    }
+
+    static int firstIndexAtOrAfter(long[] matches, int size, long packed) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (matches[mid] < packed) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long pack(int line, int column) {
+        return (long) line << 32 | column;
+    }
+
+    private static Cursor.Position unpack(long packed) {
+        return new Cursor.Position((int) (packed >>> 32) + 1, (int) packed + 1);
+    }
+}
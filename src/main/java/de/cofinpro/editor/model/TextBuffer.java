@@ -0,0 +1,127 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.event.Progress;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+
+/**
+ * line oriented storage of the editor's document - lines and columns are 0-based here.
+ */
+public interface TextBuffer {
+
+    int lineCount();
+
+    int lineLength(int line);
+
+    String substring(int line, int from, int to);
+
+    CharSequence line(int line);
+
+    void insert(int line, int column, char character);
+
+    /**
+     * inserts a text, that may span several lines.
+     */
+    void insert(int line, int column, CharSequence text);
+
+    void deleteCharAt(int line, int column);
+
+    /**
+     * deletes length characters from the given position on - newlines included.
+     */
+    void delete(int line, int column, int length);
+
+    void splitLine(int line, int column);
+
+    void joinWithNext(int line);
+
+    /**
+     * replaces the contents of count lines (ascending, without newlines in the contents) as one batch.
+     */
+    void replaceLines(int[] lines, CharSequence[] contents, int count);
+
+    void replaceBy(String contents);
+
+    /**
+     * appends text at the end of the document - text read from a followed file, no edit of the user.
+     */
+    default void append(CharSequence text) {
+        var lastLine = lineCount() - 1;
+        insert(lastLine, lineLength(lastLine), text);
+    }
+
+    /**
+     * charset the document was loaded with and is saved with.
+     */
+    default Charset charset() {
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * reads the lines as they are now - for a scan on other threads. Valid, as long as the buffer is not changed.
+     */
+    default IntFunction<CharSequence> lineReader() {
+        return this::line;
+    }
+
+    /**
+     * takes on the lines a background load indexed meanwhile - only called by the thread, that changes the buffer.
+     */
+    default void followLoading() {
+    }
+
+    /**
+     * waits for a background load to complete - so that the buffer holds all lines.
+     */
+    default void awaitLoaded() {
+    }
+
+    /**
+     * waits for a background load to complete, reporting its progress - callable from another thread.
+     */
+    default void awaitLoaded(Progress progress) {
+    }
+
+    /**
+     * false, while a background load is still running.
+     */
+    default boolean isLoaded() {
+        return true;
+    }
+
+    /**
+     * decodes the file as UTF-8 in chunks - malformed bytes are taken as replacement characters.
+     *
+     * @return number of bytes loaded - the file offset, from which on appended text is followed
+     */
+    default long load(Path file, Progress progress) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var size = channel.size();
+            var text = new StringBuilder((int) Math.min(size, Integer.MAX_VALUE - 8));
+            var loaded = new Utf8Decoder().decode(channel, text, progress, size);
+            replaceBy(text.toString());
+            return loaded;
+        }
+    }
+
+    void save(Path file) throws IOException;
+
+    /**
+     * saves with progress - cancelling leaves the file untouched.
+     */
+    default void save(Path file, Progress progress) throws IOException {
+        save(file);
+    }
+
+    /**
+     * releases the resources held - the buffer is not used any more.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,24 @@
+package de.cofinpro.editor.model;
+
+import java.io.IOException;
+
+/**
+ * character store, that pieces of the piece table refer to - with an index of its newline positions.
+ */
+interface TextSource {
+
+    char NEWLINE = '\n';
+
+    long length();
+
+    int newlinesBetween(long from, long to);
+
+    /**
+     * offset of the n-th (1-based) newline at or after the given offset.
+     */
+    long newlineOffset(long from, int n);
+
+    void appendTo(StringBuilder target, long from, long to);
+
+    void writeTo(AtomicFileWriter writer, long from, long to) throws IOException;
+}
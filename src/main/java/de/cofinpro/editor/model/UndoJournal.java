@@ -0,0 +1,339 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.terminal.Cursor;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * undo history as compact journal - no object per keystroke: the entries are fixed size records in one int array,
+ * their texts are stored back to back in one char array. An entry replaces its removed by its inserted text at a
+ * position, so undo and redo cost O(size of the change). Entries of one step (the lines of a replace-all) are undone
+ * together, consecutive typing or deleting is merged into the last entry.
+ * Memory is capped: when the journal exceeds its capacity, the oldest steps are dropped - a single step too large
+ * for the capacity clears the history.
+ */
+class UndoJournal {
+
+    static final int DEFAULT_CAPACITY = 1 << 25;
+
+    private static final int MERGE_LIMIT = 256;
+    private static final int INITIAL_ENTRIES = 64;
+    private static final int INITIAL_TEXT = 1024;
+
+    private static final int STEP = 0;
+    private static final int KIND = 1;
+    private static final int LINE = 2;
+    private static final int COLUMN = 3;
+    private static final int TEXT_START = 4;
+    private static final int REMOVED = 5;
+    private static final int INSERTED = 6;
+    private static final int RECORD_SIZE = 7;
+
+    private static final int KIND_TEXT = 0;
+    private static final int KIND_LINE = 1;
+
+    private final long capacity;
+    private int[] records = new int[INITIAL_ENTRIES * RECORD_SIZE];
+    private char[] text = new char[INITIAL_TEXT];
+    private int size;
+    private int applied;
+    private int textSize;
+    private int step;
+    private boolean mergeable;
+
+    /**
+     * @param capacity maximum memory of the journal's records and texts in bytes
+     */
+    UndoJournal(long capacity) {
+        this.capacity = capacity;
+    }
+
+    void recordInsert(int line, int column, CharSequence inserted) {
+        if (!fits(inserted.length())) {
+            clear();
+            return;
+        }
+        var last = (size - 1) * RECORD_SIZE;
+        if (isMergeable() && records[last + REMOVED] == 0 && records[last + LINE] == line
+                && records[last + COLUMN] + records[last + INSERTED] == column
+                && records[last + INSERTED] + inserted.length() <= MERGE_LIMIT && newlines(inserted) == 0) {
+            appendText(inserted);
+            records[last + INSERTED] += inserted.length();
+            return;
+        }
+        startStep();
+        addEntry(KIND_TEXT, line, column, 0);
+        appendText(inserted);
+        records[(size - 1) * RECORD_SIZE + INSERTED] = inserted.length();
+        mergeable = newlines(inserted) == 0;
+        trim();
+    }
+
+    /**
+     * records a deleted character: a delete at the same position (forward) or just in front of the last delete
+     * (backspace) in the same line is merged.
+     */
+    void recordDelete(int line, int column, char removed) {
+        var last = (size - 1) * RECORD_SIZE;
+        if (isMergeable() && records[last + INSERTED] == 0 && records[last + LINE] == line
+                && records[last + REMOVED] < MERGE_LIMIT) {
+            if (records[last + COLUMN] == column) {
+                appendText(removed);
+                records[last + REMOVED]++;
+                return;
+            }
+            if (records[last + COLUMN] == column + 1) {
+                prependText(last, removed);
+                records[last + COLUMN] = column;
+                records[last + REMOVED]++;
+                return;
+            }
+        }
+        startStep();
+        addEntry(KIND_TEXT, line, column, 0);
+        appendText(removed);
+        records[(size - 1) * RECORD_SIZE + REMOVED] = 1;
+        mergeable = true;
+        trim();
+    }
+
+    /**
+     * records the lines of a replace-all as one step - to be called before the buffer is changed.
+     */
+    void recordLines(TextBuffer buffer, LineReplacements replacements) {
+        long length = 0;
+        for (int i = 0; i < replacements.count(); i++) {
+            length += buffer.lineLength(replacements.lines()[i]) + replacements.contents()[i].length();
+        }
+        if (!fits(length)) {
+            clear();
+            return;
+        }
+        startStep();
+        for (int i = 0; i < replacements.count(); i++) {
+            var line = replacements.lines()[i];
+            addEntry(KIND_LINE, line, 0, buffer.lineLength(line));
+            appendText(buffer.line(line));
+            appendText(replacements.contents()[i]);
+            records[(size - 1) * RECORD_SIZE + INSERTED] = replacements.contents()[i].length();
+        }
+        mergeable = false;
+        trim();
+    }
+
+    void clear() {
+        size = 0;
+        applied = 0;
+        textSize = 0;
+        mergeable = false;
+    }
+
+    /**
+     * reverts the last applied step.
+     *
+     * @return position behind the restored text
+     */
+    Optional<Cursor.Position> undo(TextBuffer buffer, LineChangeListener listener) {
+        if (applied == 0) {
+            return Optional.empty();
+        }
+        mergeable = false;
+        var first = applied - 1;
+        while (first > 0 && records[(first - 1) * RECORD_SIZE + STEP] == records[first * RECORD_SIZE + STEP]) {
+            first--;
+        }
+        var position = apply(first, applied, true, buffer, listener);
+        applied = first;
+        return Optional.of(position);
+    }
+
+    /**
+     * re-applies the last undone step.
+     *
+     * @return position behind the inserted text
+     */
+    Optional<Cursor.Position> redo(TextBuffer buffer, LineChangeListener listener) {
+        if (applied == size) {
+            return Optional.empty();
+        }
+        mergeable = false;
+        var end = applied + 1;
+        while (end < size && records[end * RECORD_SIZE + STEP] == records[applied * RECORD_SIZE + STEP]) {
+            end++;
+        }
+        var position = apply(applied, end, false, buffer, listener);
+        applied = end;
+        return Optional.of(position);
+    }
+
+    private Cursor.Position apply(int from, int to, boolean undo, TextBuffer buffer, LineChangeListener listener) {
+        if (records[from * RECORD_SIZE + KIND] == KIND_LINE) {
+            return applyLines(from, to, undo, buffer, listener);
+        }
+        Cursor.Position position = null;
+        for (int i = 0; i < to - from; i++) {
+            position = applyText(undo ? to - 1 - i : from + i, undo, buffer, listener);
+        }
+        return position;
+    }
+
+    private Cursor.Position applyText(int entry, boolean undo, TextBuffer buffer, LineChangeListener listener) {
+        var record = entry * RECORD_SIZE;
+        var line = records[record + LINE];
+        var column = records[record + COLUMN];
+        var removedText = CharBuffer.wrap(text, records[record + TEXT_START], records[record + REMOVED]);
+        var insertedText = CharBuffer.wrap(text, records[record + TEXT_START] + records[record + REMOVED],
+                records[record + INSERTED]);
+        var deleted = undo ? insertedText : removedText;
+        var inserted = undo ? removedText : insertedText;
+        if (!deleted.isEmpty()) {
+            buffer.delete(line, column, deleted.length());
+        }
+        if (!inserted.isEmpty()) {
+            buffer.insert(line, column, inserted);
+        }
+        var insertedNewlines = newlines(inserted);
+        listener.linesChanged(line, 1 + newlines(deleted), 1 + insertedNewlines);
+        if (insertedNewlines == 0) {
+            return new Cursor.Position(line + 1, column + inserted.length() + 1);
+        }
+        var lastNewline = inserted.length() - 1;
+        while (inserted.charAt(lastNewline) != TextSource.NEWLINE) {
+            lastNewline--;
+        }
+        return new Cursor.Position(line + insertedNewlines + 1, inserted.length() - lastNewline);
+    }
+
+    private Cursor.Position applyLines(int from, int to, boolean undo, TextBuffer buffer,
+                                       LineChangeListener listener) {
+        var lines = new int[to - from];
+        var contents = new CharSequence[to - from];
+        for (int i = from; i < to; i++) {
+            var record = i * RECORD_SIZE;
+            lines[i - from] = records[record + LINE];
+            contents[i - from] = undo
+                    ? CharBuffer.wrap(text, records[record + TEXT_START], records[record + REMOVED])
+                    : CharBuffer.wrap(text, records[record + TEXT_START] + records[record + REMOVED],
+                    records[record + INSERTED]);
+        }
+        buffer.replaceLines(lines, contents, lines.length);
+        var changedLines = lines[lines.length - 1] - lines[0] + 1;
+        listener.linesChanged(lines[0], changedLines, changedLines);
+        return new Cursor.Position(lines[0] + 1, 1);
+    }
+
+    private boolean isMergeable() {
+        return mergeable && size > 0 && applied == size;
+    }
+
+    private boolean fits(long chars) {
+        return 2 * chars + (long) RECORD_SIZE * Integer.BYTES <= capacity;
+    }
+
+    /**
+     * a new step discards the undone entries.
+     */
+    private void startStep() {
+        size = applied;
+        textSize = size == 0 ? 0 : entryEnd(size - 1);
+        step++;
+    }
+
+    private void addEntry(int kind, int line, int column, int removed) {
+        if (records.length < (size + 1) * RECORD_SIZE) {
+            records = Arrays.copyOf(records, records.length * 2);
+        }
+        var record = size * RECORD_SIZE;
+        records[record + STEP] = step;
+        records[record + KIND] = kind;
+        records[record + LINE] = line;
+        records[record + COLUMN] = column;
+        records[record + TEXT_START] = textSize;
+        records[record + REMOVED] = removed;
+        records[record + INSERTED] = 0;
+        applied = ++size;
+    }
+
+    private int entryEnd(int entry) {
+        var record = entry * RECORD_SIZE;
+        return records[record + TEXT_START] + records[record + REMOVED] + records[record + INSERTED];
+    }
+
+    private void appendText(CharSequence chars) {
+        ensureText(chars.length());
+        for (int i = 0; i < chars.length(); i++) {
+            text[textSize++] = chars.charAt(i);
+        }
+    }
+
+    private void appendText(char character) {
+        ensureText(1);
+        text[textSize++] = character;
+    }
+
+    private void prependText(int record, char character) {
+        ensureText(1);
+        var start = records[record + TEXT_START];
+        System.arraycopy(text, start, text, start + 1, textSize - start);
+        text[start] = character;
+        textSize++;
+    }
+
+    private void ensureText(int length) {
+        if (text.length < textSize + length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textSize + length));
+        }
+    }
+
+    /**
+     * drops the oldest steps, until the journal uses at most three quarters of its capacity.
+     */
+    private void trim() {
+        if (usage(0) <= capacity) {
+            return;
+        }
+        var dropped = 0;
+        var lastStep = records[(size - 1) * RECORD_SIZE + STEP];
+        while (dropped < size && records[dropped * RECORD_SIZE + STEP] != lastStep
+                && usage(dropped) > capacity / 4 * 3) {
+            dropped++;
+        }
+        while (dropped < size && dropped > 0
+                && records[dropped * RECORD_SIZE + STEP] == records[(dropped - 1) * RECORD_SIZE + STEP]) {
+            dropped++;
+        }
+        if (dropped == size) {
+            clear();
+            return;
+        }
+        var textShift = records[dropped * RECORD_SIZE + TEXT_START];
+        System.arraycopy(records, dropped * RECORD_SIZE, records, 0, (size - dropped) * RECORD_SIZE);
+        System.arraycopy(text, textShift, text, 0, textSize - textShift);
+        size -= dropped;
+        applied -= dropped;
+        textSize -= textShift;
+        for (int i = 0; i < size; i++) {
+            records[i * RECORD_SIZE + TEXT_START] -= textShift;
+        }
+        if (usage(0) > capacity) {
+            clear();
+        }
+    }
+
+    private long usage(int dropped) {
+        var textShift = dropped == size ? textSize : records[dropped * RECORD_SIZE + TEXT_START];
+        return 2L * (textSize - textShift) + (long) (size - dropped) * RECORD_SIZE * Integer.BYTES;
+    }
+
+    private static int newlines(CharSequence chars) {
+        var newlines = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            if (chars.charAt(i) == TextSource.NEWLINE) {
+                newlines++;
+            }
+        }
+        return newlines;
+    }
+}
@@ -0,0 +1,159 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.event.Progress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * streaming UTF-8 decoder: bytes may be fed in chunks of any size - a sequence split between two chunks is kept as
+ * state and completed by the next one. Characters are appended to the target directly, ASCII bytes without any
+ * further work - so decoding does not allocate. Malformed sequences (invalid or cut off bytes, overlong encodings,
+ * surrogates) are decoded as one replacement character.
+ */
+public class Utf8Decoder {
+
+    public static final char REPLACEMENT = '\uFFFD';
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private int codePoint;
+    private int length;
+    private int pending;
+    private long malformed;
+
+    /**
+     * number of bytes of the sequence starting with the given lead byte - -1, if it cannot start one.
+     */
+    public static int sequenceLength(int lead) {
+        if (lead < 0x80) {
+            return 1;
+        }
+        if (lead < 0xc2) {
+            return -1;
+        }
+        if (lead < 0xe0) {
+            return 2;
+        }
+        if (lead < 0xf0) {
+            return 3;
+        }
+        return lead < 0xf5 ? 4 : -1;
+    }
+
+    public static boolean isContinuation(int value) {
+        return (value & 0xc0) == 0x80;
+    }
+
+    /**
+     * number of malformed sequences decoded so far - each taken as one replacement character.
+     */
+    public long malformedCount() {
+        return malformed;
+    }
+
+    /**
+     * true, if a sequence was started, but is not complete yet.
+     */
+    public boolean isPending() {
+        return pending > 0;
+    }
+
+    /**
+     * feeds one byte (0..255) - a completed character is appended to the target.
+     */
+    public void decode(int value, StringBuilder target) {
+        if (pending > 0) {
+            if (isContinuation(value)) {
+                codePoint = codePoint << 6 | value & 0x3f;
+                if (--pending == 0) {
+                    appendCodePoint(target);
+                }
+                return;
+            }
+            finish(target);
+        }
+        if (value < 0x80) {
+            target.append((char) value);
+            return;
+        }
+        length = sequenceLength(value);
+        if (length < 0) {
+            malformed++;
+            target.append(REPLACEMENT);
+            return;
+        }
+        codePoint = value & (0xff >> (length + 1));
+        pending = length - 1;
+    }
+
+    /**
+     * decodes the bytes between position and limit of the buffer - its position is not changed.
+     */
+    public void decode(ByteBuffer bytes, StringBuilder target) {
+        var limit = bytes.limit();
+        for (int i = bytes.position(); i < limit; i++) {
+            var value = bytes.get(i);
+            if (value >= 0 && pending == 0) {
+                target.append((char) value);
+            } else {
+                decode(value & 0xff, target);
+            }
+        }
+    }
+
+    /**
+     * decodes the channel's bytes up to its end chunk-wise.
+     *
+     * @return number of bytes read
+     */
+    public long decode(ReadableByteChannel channel, StringBuilder target) throws IOException {
+        return decode(channel, target, Progress.NONE, 0);
+    }
+
+    /**
+     * decodes the channel's bytes up to its end chunk-wise - reporting the bytes read of the given size after each
+     * chunk.
+     *
+     * @return number of bytes read
+     */
+    public long decode(ReadableByteChannel channel, StringBuilder target, Progress progress, long size)
+            throws IOException {
+        var chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        long read = 0;
+        var count = channel.read(chunk);
+        while (count >= 0) {
+            progress.checkCancelled();
+            read += count;
+            progress.report(read, size);
+            chunk.flip();
+            decode(chunk, target);
+            chunk.clear();
+            count = channel.read(chunk);
+        }
+        finish(target);
+        return read;
+    }
+
+    /**
+     * ends the input - an incomplete sequence is appended as replacement character.
+     */
+    public void finish(StringBuilder target) {
+        if (pending > 0) {
+            pending = 0;
+            malformed++;
+            target.append(REPLACEMENT);
+        }
+    }
+
+    private void appendCodePoint(StringBuilder target) {
+        var overlong = length == 3 && codePoint < 0x800 || length == 4 && codePoint < 0x10000;
+        if (overlong || codePoint > Character.MAX_CODE_POINT
+                || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            malformed++;
+            target.append(REPLACEMENT);
+        } else {
+            target.appendCodePoint(codePoint);
+        }
+    }
+}
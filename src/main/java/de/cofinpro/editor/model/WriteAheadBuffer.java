@@ -0,0 +1,243 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.event.Progress;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+/**
+ * text buffer decorator, that records every edit in the attached edit log before applying it - and the text appended
+ * from the followed file, so that a replay knows where it went in between the edits. Loading, saving and reading are
+ * passed through unchanged.
+ */
+class WriteAheadBuffer implements TextBuffer {
+
+    private TextBuffer buffer;
+    private EditLog editLog;
+
+    WriteAheadBuffer(TextBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * replaces the wrapped buffer by one a file was loaded into - closing the old one.
+     */
+    void replaceBuffer(TextBuffer loaded) {
+        buffer.close();
+        buffer = loaded;
+    }
+
+    /**
+     * attaches an edit log, after replaying the edits it holds onto the buffer.
+     *
+     * @param loadedSize number of the document's bytes loaded into the buffer
+     * @return number of replayed edits
+     */
+    int attach(EditLog log, long loadedSize) throws IOException {
+        detach();
+        var replayed = log.replay(buffer, loadedSize);
+        editLog = log;
+        return replayed;
+    }
+
+    /**
+     * position the document was followed up to, if the replayed edit log was written for the followed document -
+     * the text loaded behind it was cut off by the replay.
+     */
+    Optional<FileFollower.Position> followedPosition() {
+        return editLog == null ? Optional.empty() : editLog.followedPosition();
+    }
+
+    /**
+     * tells the edit log, that its document is followed from the position on.
+     */
+    void followFrom(FileFollower.Position position) {
+        if (editLog != null) {
+            editLog.follow(position);
+        }
+    }
+
+    /**
+     * appends text read from the followed file - recorded as an edit, if the edit log belongs to another document
+     * (the buffer was saved under another name).
+     *
+     * @param position followed position behind the text
+     */
+    void appendFollowed(CharSequence text, Path file, FileFollower.Position position) {
+        if (editLog != null && editLog.isOf(file)) {
+            editLog.append(text, position);
+        } else if (editLog != null) {
+            buffer.awaitLoaded();
+            var line = buffer.lineCount() - 1;
+            editLog.insert(line, buffer.lineLength(line), text);
+        }
+        buffer.append(text);
+    }
+
+    /**
+     * detaches and removes the current edit log.
+     */
+    void detach() throws IOException {
+        if (editLog != null) {
+            editLog.delete();
+            editLog = null;
+        }
+    }
+
+    /**
+     * true, if the edits made since a failed write of the edit log are not safe from a crash.
+     */
+    boolean isEditLogFailing() {
+        return editLog != null && editLog.isFailing();
+    }
+
+    /**
+     * commits and closes the current edit log - keeping it for a later replay.
+     */
+    void closeEditLog() throws IOException {
+        if (editLog != null) {
+            editLog.close();
+            editLog = null;
+        }
+    }
+
+    @Override
+    public int lineCount() {
+        return buffer.lineCount();
+    }
+
+    @Override
+    public int lineLength(int line) {
+        return buffer.lineLength(line);
+    }
+
+    @Override
+    public String substring(int line, int from, int to) {
+        return buffer.substring(line, from, to);
+    }
+
+    @Override
+    public CharSequence line(int line) {
+        return buffer.line(line);
+    }
+
+    @Override
+    public void insert(int line, int column, char character) {
+        if (editLog != null) {
+            editLog.insert(line, column, character);
+        }
+        buffer.insert(line, column, character);
+    }
+
+    @Override
+    public void insert(int line, int column, CharSequence text) {
+        if (editLog != null) {
+            editLog.insert(line, column, text);
+        }
+        buffer.insert(line, column, text);
+    }
+
+    @Override
+    public void deleteCharAt(int line, int column) {
+        if (editLog != null) {
+            editLog.deleteCharAt(line, column);
+        }
+        buffer.deleteCharAt(line, column);
+    }
+
+    @Override
+    public void delete(int line, int column, int length) {
+        if (editLog != null) {
+            editLog.delete(line, column, length);
+        }
+        buffer.delete(line, column, length);
+    }
+
+    @Override
+    public void splitLine(int line, int column) {
+        if (editLog != null) {
+            editLog.splitLine(line, column);
+        }
+        buffer.splitLine(line, column);
+    }
+
+    @Override
+    public void joinWithNext(int line) {
+        if (editLog != null && line < buffer.lineCount() - 1) { // the last line is left as it is - followed text
+            // may be appended to it
+            editLog.joinWithNext(line);
+        }
+        buffer.joinWithNext(line);
+    }
+
+    @Override
+    public void replaceLines(int[] lines, CharSequence[] contents, int count) {
+        if (editLog != null) {
+            editLog.replaceLines(lines, contents, count);
+        }
+        buffer.replaceLines(lines, contents, count);
+    }
+
+    @Override
+    public void replaceBy(String contents) {
+        buffer.replaceBy(contents);
+    }
+
+    @Override
+    public void append(CharSequence text) {
+        buffer.append(text);
+    }
+
+    @Override
+    public Charset charset() {
+        return buffer.charset();
+    }
+
+    @Override
+    public IntFunction<CharSequence> lineReader() {
+        return buffer.lineReader();
+    }
+
+    @Override
+    public void followLoading() {
+        buffer.followLoading();
+    }
+
+    @Override
+    public void awaitLoaded() {
+        buffer.awaitLoaded();
+    }
+
+    @Override
+    public void awaitLoaded(Progress progress) {
+        buffer.awaitLoaded(progress);
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return buffer.isLoaded();
+    }
+
+    @Override
+    public long load(Path file, Progress progress) throws IOException {
+        return buffer.load(file, progress);
+    }
+
+    @Override
+    public void save(Path file) throws IOException {
+        buffer.save(file);
+    }
+
+    @Override
+    public void save(Path file, Progress progress) throws IOException {
+        buffer.save(file, progress);
+    }
+
+    @Override
+    public void close() {
+        buffer.close();
+    }
+}
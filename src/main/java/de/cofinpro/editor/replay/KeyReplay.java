@@ -0,0 +1,155 @@
+package de.cofinpro.editor.replay;
+
+import de.cofinpro.editor.config.EditorOptions;
+import de.cofinpro.editor.config.Log4j2CustomConfigurationFactory;
+import de.cofinpro.editor.model.EditorModel;
+import de.cofinpro.editor.terminal.Editor;
+import de.cofinpro.editor.terminal.HeadlessTerminal;
+import de.cofinpro.editor.terminal.Terminal;
+import org.apache.logging.log4j.core.config.ConfigurationFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * replays recorded key traces against a headless editor and reports the percentiles of the per key latency:
+ * <code>replay [--rows=N] [--cols=N] [--file=FILE] [--wrap] [--compress] [--line-list] [--warmup=RUNS]
+ * [--max-p99-micros=N] [--stats=FILE] TRACE...</code>
+ * Each trace is run warmup times first, to let the JIT compile the hot paths. The exit code is 1, if the 99th
+ * percentile of a trace exceeds the given maximum - so that a CI build fails on a latency regression. With a stats
+ * file, the editor's own breakdown (edit, search, frame bytes...) of the last measured run is written to it.
+ */
+public class KeyReplay {
+
+    static {
+        ConfigurationFactory.setConfigurationFactory(new Log4j2CustomConfigurationFactory());
+    }
+
+    private int rows = 40;
+    private int cols = 120;
+    private String filename = "";
+    private boolean wrap;
+    private boolean compress;
+    private boolean lineList;
+    private int warmup = 1;
+    private long maxP99Micros = Long.MAX_VALUE;
+    private String statsFile = "";
+    private final List<Path> traces = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        var replay = new KeyReplay();
+        replay.parse(args);
+        System.exit(replay.run() ? 0 : 1);
+    }
+
+    private void parse(String... args) {
+        for (var arg : args) {
+            if (arg.startsWith("--rows=")) {
+                rows = Integer.parseInt(value(arg));
+            } else if (arg.startsWith("--cols=")) {
+                cols = Integer.parseInt(value(arg));
+            } else if (arg.startsWith("--file=")) {
+                filename = value(arg);
+            } else if (arg.equals("--wrap")) {
+                wrap = true;
+            } else if (arg.equals("--compress")) {
+                compress = true;
+            } else if (arg.equals("--line-list")) {
+                lineList = true;
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(value(arg));
+            } else if (arg.startsWith("--max-p99-micros=")) {
+                maxP99Micros = Long.parseLong(value(arg));
+            } else if (arg.startsWith("--stats=")) {
+                statsFile = value(arg);
+            } else if (arg.startsWith("-")) {
+                throw new IllegalArgumentException("usage: replay [--rows=N] [--cols=N] [--file=FILE] [--wrap] "
+                        + "[--compress] [--line-list] [--warmup=RUNS] [--max-p99-micros=N] [--stats=FILE] TRACE...");
+            } else {
+                traces.add(Path.of(arg));
+            }
+        }
+    }
+
+    private static String value(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+
+    /**
+     * @return true, if no trace exceeded the latency maximum
+     */
+    private boolean run() throws IOException {
+        var passed = true;
+        for (var trace : traces) {
+            var chunks = KeyTrace.read(trace);
+            for (int i = 0; i < warmup; i++) {
+                replay(chunks);
+            }
+            var screen = new CountingChannel();
+            var latencies = replay(chunks, screen);
+            var p99 = percentile(latencies, 99);
+            System.out.printf("%s: %d keys, %d bytes written, latency p50 %d us, p90 %d us, p99 %d us, max %d us%n",
+                    trace, latencies.length, screen.written, percentile(latencies, 50), percentile(latencies, 90),
+                    p99, percentile(latencies, 100));
+            if (p99 > maxP99Micros) {
+                System.out.printf("%s: p99 latency %d us exceeds the maximum of %d us%n", trace, p99, maxP99Micros);
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    private void replay(List<byte[]> chunks) {
+        replay(chunks, new CountingChannel(), "");
+    }
+
+    private long[] replay(List<byte[]> chunks, CountingChannel screen) {
+        return replay(chunks, screen, statsFile);
+    }
+
+    private long[] replay(List<byte[]> chunks, CountingChannel screen, String stats) {
+        var keys = new TimedKeys(chunks);
+        var options = new EditorOptions(filename, EditorModel.EDIT_LOG_DISABLED, false, wrap, compress, lineList, "",
+                false, stats);
+        new Editor(options, new HeadlessTerminal(keys, screen, new Terminal.WindowSize(rows, cols))).run();
+        return keys.sortedLatencies();
+    }
+
+    /**
+     * the given percentile of the sorted nanosecond latencies - in microseconds.
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        var index = Math.max(0, (int) Math.ceil(sorted.length * percentile / 100.0) - 1);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[index]);
+    }
+
+    private static class CountingChannel implements WritableByteChannel {
+        private long written;
+
+        @Override
+        public int write(ByteBuffer source) {
+            var count = source.remaining();
+            source.position(source.limit());
+            written += count;
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package de.cofinpro.editor.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * text format of a keystroke trace: one line per chunk of bytes, that the terminal sent at once (a key, an escape
+ * sequence, a paste). Printable ASCII is kept as is, all other bytes are escaped: \e (ESC), \r, \n, \t, \\ and \xHH.
+ * Empty lines and lines starting with # are skipped - a chunk starting with # is escaped as \x23.
+ */
+class KeyTrace {
+
+    private static final char ESCAPE = '\\';
+    private static final char COMMENT = '#';
+    private static final byte ESC = 0x1b;
+
+    private KeyTrace() {
+        // no instances
+    }
+
+    static List<byte[]> read(Path trace) throws IOException {
+        var chunks = new ArrayList<byte[]>();
+        for (var line : Files.readAllLines(trace, StandardCharsets.US_ASCII)) {
+            if (!line.isEmpty() && line.charAt(0) != COMMENT) {
+                chunks.add(parse(line));
+            }
+        }
+        return chunks;
+    }
+
+    static byte[] parse(String line) {
+        var bytes = new ByteArrayOutputStream(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            var character = line.charAt(i);
+            if (character != ESCAPE || i + 1 == line.length()) {
+                bytes.write(character);
+                continue;
+            }
+            switch (line.charAt(++i)) {
+                case 'e' -> bytes.write(ESC);
+                case 'r' -> bytes.write('\r');
+                case 'n' -> bytes.write('\n');
+                case 't' -> bytes.write('\t');
+                case 'x' -> {
+                    bytes.write(Integer.parseInt(line.substring(i + 1, i + 3), 16));
+                    i += 2;
+                }
+                default -> bytes.write(line.charAt(i));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static String format(byte[] chunk, int offset, int length) {
+        var line = new StringBuilder(length);
+        for (int i = offset; i < offset + length; i++) {
+            var value = chunk[i] & 0xff;
+            switch (value) {
+                case ESC -> line.append("\\e");
+                case '\r' -> line.append("\\r");
+                case '\n' -> line.append("\\n");
+                case '\t' -> line.append("\\t");
+                case ESCAPE -> line.append("\\\\");
+                default -> {
+                    if (value < ' ' || value > '~' || value == COMMENT && i == offset) {
+                        line.append("\\x%02x".formatted(value));
+                    } else {
+                        line.append((char) value);
+                    }
+                }
+            }
+        }
+        return line.toString();
+    }
+}
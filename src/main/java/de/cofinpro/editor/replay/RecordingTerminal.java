@@ -0,0 +1,71 @@
+package de.cofinpro.editor.replay;
+
+import de.cofinpro.editor.terminal.Terminal;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * terminal decorator, that records every chunk of keys read as a line of a key trace - for a later replay.
+ */
+public class RecordingTerminal implements Terminal {
+
+    private final Terminal terminal;
+    private final Writer trace;
+
+    public RecordingTerminal(Terminal terminal, Path trace) throws IOException {
+        this.terminal = terminal;
+        this.trace = Files.newBufferedWriter(trace, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public InputStream keys() {
+        return new FilterInputStream(terminal.keys()) {
+            @Override
+            public int read(byte[] target, int offset, int length) throws IOException {
+                var count = super.read(target, offset, length);
+                if (count > 0) {
+                    trace.append(KeyTrace.format(target, offset, count)).append('\n').flush();
+                }
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public WritableByteChannel screen() {
+        return terminal.screen();
+    }
+
+    @Override
+    public WindowSize windowSize() {
+        return terminal.windowSize();
+    }
+
+    @Override
+    public void onResize(Runnable listener) {
+        terminal.onResize(listener);
+    }
+
+    @Override
+    public void enterRawMode() {
+        terminal.enterRawMode();
+    }
+
+    @Override
+    public void leaveRawMode() {
+        terminal.leaveRawMode();
+        try {
+            trace.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
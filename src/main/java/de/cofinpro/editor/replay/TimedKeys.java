@@ -0,0 +1,68 @@
+package de.cofinpro.editor.replay;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * key stream replaying the chunks of a trace - each read delivers at most one chunk, as a terminal would. The latency
+ * of a chunk is the time from its delivery to the editor's next read, which it only does after the frame for the
+ * chunk was flushed.
+ */
+class TimedKeys extends InputStream {
+
+    private final List<byte[]> chunks;
+    private final long[] latencies;
+    private int chunk;
+    private int position;
+    private long delivered;
+
+    TimedKeys(List<byte[]> chunks) {
+        this.chunks = chunks;
+        latencies = new long[chunks.size()];
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) {
+        var now = System.nanoTime();
+        if (chunk > 0 && position == 0 && latencies[chunk - 1] == 0) {
+            latencies[chunk - 1] = now - delivered;
+        }
+        if (chunk == chunks.size()) {
+            return -1;
+        }
+        var bytes = chunks.get(chunk);
+        var count = Math.min(length, bytes.length - position);
+        System.arraycopy(bytes, position, target, offset, count);
+        position += count;
+        if (position == bytes.length) {
+            chunk++;
+            position = 0;
+        }
+        delivered = System.nanoTime();
+        return count;
+    }
+
+    @Override
+    public int read() {
+        var single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    /**
+     * rest of a chunk larger than the editor's read buffer - 0 between chunks, since the next one is a later key.
+     */
+    @Override
+    public int available() {
+        return position == 0 ? 0 : chunks.get(chunk).length - position;
+    }
+
+    /**
+     * latencies in nanoseconds of the chunks, whose processing completed - in ascending order.
+     */
+    long[] sortedLatencies() {
+        var completed = Arrays.stream(latencies).filter(latency -> latency > 0).toArray();
+        Arrays.sort(completed);
+        return completed;
+    }
+}
@@ -0,0 +1,117 @@
+package de.cofinpro.editor.syntax;
+
+import java.util.Arrays;
+
+/**
+ * scanning helpers shared by the lexers - all return the index behind the scanned construct.
+ */
+final class CharScanner {
+
+    private CharScanner() {
+        // no instances
+    }
+
+    /**
+     * end of the quoted text starting at the index - escaped quotes included, the line end, if it is not closed.
+     */
+    static int quotedEnd(CharSequence line, int start) {
+        var quote = line.charAt(start);
+        var length = line.length();
+        var i = start + 1;
+        while (i < length) {
+            var character = line.charAt(i);
+            if (character == '\\') {
+                i += 2;
+            } else if (character == quote) {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    static int identifierEnd(CharSequence line, int start) {
+        var length = line.length();
+        var i = start;
+        while (i < length && Character.isJavaIdentifierPart(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * end of a number literal - digits, letters (hex digits, exponents, suffixes), dots, underscores and the sign of
+     * an exponent.
+     */
+    static int numberEnd(CharSequence line, int start) {
+        var length = line.length();
+        var i = start + 1;
+        while (i < length) {
+            var character = line.charAt(i);
+            var sign = (character == '+' || character == '-')
+                    && (line.charAt(i - 1) == 'e' || line.charAt(i - 1) == 'E');
+            if (!Character.isLetterOrDigit(character) && character != '.' && character != '_' && !sign) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * index of the text in the line from the given index on - -1, if it does not occur.
+     */
+    static int indexOf(CharSequence line, String text, int from) {
+        var last = line.length() - text.length();
+        for (int i = from; i <= last; i++) {
+            if (regionMatches(line, i, text)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static boolean regionMatches(CharSequence line, int start, String text) {
+        if (start + text.length() > line.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (line.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * true, if the chars between start and end are one of the words - which are grouped by length.
+     */
+    static boolean isOneOf(CharSequence line, int start, int end, String[][] wordsByLength) {
+        var length = end - start;
+        if (length >= wordsByLength.length) {
+            return false;
+        }
+        for (var word : wordsByLength[length]) {
+            if (regionMatches(line, start, word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String[][] byLength(String... words) {
+        var longest = 0;
+        for (var word : words) {
+            longest = Math.max(longest, word.length());
+        }
+        var grouped = new String[longest + 1][];
+        for (int length = 0; length <= longest; length++) {
+            var finalLength = length;
+            grouped[length] = Arrays.stream(words)
+                    .filter(word -> word.length() == finalLength)
+                    .toArray(String[]::new);
+        }
+        return grouped;
+    }
+}
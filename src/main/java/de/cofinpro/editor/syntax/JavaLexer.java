@@ -0,0 +1,92 @@
+package de.cofinpro.editor.syntax;
+
+import static de.cofinpro.editor.syntax.CharScanner.byLength;
+import static de.cofinpro.editor.syntax.CharScanner.identifierEnd;
+import static de.cofinpro.editor.syntax.CharScanner.indexOf;
+import static de.cofinpro.editor.syntax.CharScanner.isOneOf;
+import static de.cofinpro.editor.syntax.CharScanner.numberEnd;
+import static de.cofinpro.editor.syntax.CharScanner.quotedEnd;
+import static de.cofinpro.editor.syntax.CharScanner.regionMatches;
+
+/**
+ * Java: keywords, literals, strings and chars, numbers, comments and annotations. Block comments and text blocks are
+ * the constructs spanning lines.
+ */
+class JavaLexer implements Lexer {
+
+    static final int BLOCK_COMMENT = 1;
+    static final int TEXT_BLOCK = 2;
+    private static final String COMMENT_END = "*/";
+    private static final String TEXT_BLOCK_QUOTES = "\"\"\"";
+    private static final String[][] KEYWORDS = byLength(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+            "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+            "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+            "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+            "throw", "throws", "transient", "try", "void", "volatile", "while", "var", "record", "yield", "sealed",
+            "permits");
+    private static final String[][] LITERALS = byLength("true", "false", "null");
+
+    @Override
+    public int lex(CharSequence line, int state, TokenSink tokens) {
+        var length = line.length();
+        var i = 0;
+        if (state == BLOCK_COMMENT || state == TEXT_BLOCK) {
+            var closing = state == BLOCK_COMMENT ? COMMENT_END : TEXT_BLOCK_QUOTES;
+            var end = indexOf(line, closing, 0);
+            if (end < 0) {
+                tokens.token(0, length, state == BLOCK_COMMENT ? TokenType.COMMENT : TokenType.STRING);
+                return state;
+            }
+            i = end + closing.length();
+            tokens.token(0, i, state == BLOCK_COMMENT ? TokenType.COMMENT : TokenType.STRING);
+        }
+        while (i < length) {
+            var character = line.charAt(i);
+            if (regionMatches(line, i, "//")) {
+                tokens.token(i, length, TokenType.COMMENT);
+                return INITIAL;
+            }
+            if (regionMatches(line, i, "/*")) {
+                var end = indexOf(line, COMMENT_END, i + 2);
+                if (end < 0) {
+                    tokens.token(i, length, TokenType.COMMENT);
+                    return BLOCK_COMMENT;
+                }
+                tokens.token(i, end + 2, TokenType.COMMENT);
+                i = end + 2;
+            } else if (regionMatches(line, i, TEXT_BLOCK_QUOTES)) {
+                var end = indexOf(line, TEXT_BLOCK_QUOTES, i + 3);
+                if (end < 0) {
+                    tokens.token(i, length, TokenType.STRING);
+                    return TEXT_BLOCK;
+                }
+                tokens.token(i, end + 3, TokenType.STRING);
+                i = end + 3;
+            } else if (character == '"' || character == '\'') {
+                var end = quotedEnd(line, i);
+                tokens.token(i, end, TokenType.STRING);
+                i = end;
+            } else if (character == '@' && i + 1 < length && Character.isJavaIdentifierStart(line.charAt(i + 1))) {
+                var end = identifierEnd(line, i + 1);
+                tokens.token(i, end, TokenType.ANNOTATION);
+                i = end;
+            } else if (Character.isJavaIdentifierStart(character)) {
+                var end = identifierEnd(line, i);
+                if (isOneOf(line, i, end, KEYWORDS)) {
+                    tokens.token(i, end, TokenType.KEYWORD);
+                } else if (isOneOf(line, i, end, LITERALS)) {
+                    tokens.token(i, end, TokenType.LITERAL);
+                }
+                i = end;
+            } else if (Character.isDigit(character)) {
+                var end = numberEnd(line, i);
+                tokens.token(i, end, TokenType.NUMBER);
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return INITIAL;
+    }
+}
@@ -0,0 +1,59 @@
+package de.cofinpro.editor.syntax;
+
+import static de.cofinpro.editor.syntax.CharScanner.byLength;
+import static de.cofinpro.editor.syntax.CharScanner.identifierEnd;
+import static de.cofinpro.editor.syntax.CharScanner.isOneOf;
+import static de.cofinpro.editor.syntax.CharScanner.numberEnd;
+import static de.cofinpro.editor.syntax.CharScanner.quotedEnd;
+
+/**
+ * JSON (and JSON lines): keys, strings, numbers and the literals. No JSON token spans lines, so every line ends in
+ * the initial state.
+ */
+class JsonLexer implements Lexer {
+
+    private static final String[][] LITERALS = byLength("true", "false", "null");
+
+    @Override
+    public boolean spansLines() {
+        return false;
+    }
+
+    @Override
+    public int lex(CharSequence line, int state, TokenSink tokens) {
+        var length = line.length();
+        var i = 0;
+        while (i < length) {
+            var character = line.charAt(i);
+            if (character == '"') {
+                var end = quotedEnd(line, i);
+                tokens.token(i, end, isKey(line, end) ? TokenType.KEY : TokenType.STRING);
+                i = end;
+            } else if (character == '-' || Character.isDigit(character)) {
+                var end = numberEnd(line, i);
+                tokens.token(i, end, TokenType.NUMBER);
+                i = end;
+            } else if (Character.isLetter(character)) {
+                var end = identifierEnd(line, i);
+                if (isOneOf(line, i, end, LITERALS)) {
+                    tokens.token(i, end, TokenType.LITERAL);
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return INITIAL;
+    }
+
+    /**
+     * true, if a colon follows the string ending at the index.
+     */
+    private static boolean isKey(CharSequence line, int end) {
+        var i = end;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i < line.length() && line.charAt(i) == ':';
+    }
+}
@@ -0,0 +1,40 @@
+package de.cofinpro.editor.syntax;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * the highlighted languages - told by the file name's extension.
+ */
+public enum Language {
+    JAVA(new JavaLexer(), "java"),
+    JSON(new JsonLexer(), "json", "jsonl", "ndjson"),
+    LOG(new LogLexer(), "log", "out");
+
+    private final Lexer lexer;
+    private final Set<String> extensions;
+
+    Language(Lexer lexer, String... extensions) {
+        this.lexer = lexer;
+        this.extensions = Set.of(extensions);
+    }
+
+    public Lexer lexer() {
+        return lexer;
+    }
+
+    public static Optional<Language> of(String filename) {
+        var dot = filename.lastIndexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+        var extension = filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+        for (var language : values()) {
+            if (language.extensions.contains(extension)) {
+                return Optional.of(language);
+            }
+        }
+        return Optional.empty();
+    }
+}
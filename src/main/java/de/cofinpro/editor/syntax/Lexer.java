@@ -0,0 +1,25 @@
+package de.cofinpro.editor.syntax;
+
+/**
+ * lexes text line by line: a construct spanning lines (a block comment) is carried over as state, that the next line
+ * is lexed in - so a line can be lexed alone, if the state at its start is known. States are small numbers, INITIAL
+ * being the state at the start of the text.
+ */
+public interface Lexer {
+
+    int INITIAL = 0;
+
+    /**
+     * hands the tokens of the line, lexed in the given state, to the sink.
+     *
+     * @return the state at the end of the line
+     */
+    int lex(CharSequence line, int state, TokenSink tokens);
+
+    /**
+     * false, if every line ends in the initial state - so that no states have to be tracked.
+     */
+    default boolean spansLines() {
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package de.cofinpro.editor.syntax;
+
+import static de.cofinpro.editor.syntax.CharScanner.byLength;
+import static de.cofinpro.editor.syntax.CharScanner.isOneOf;
+
+/**
+ * log files: the level words (in upper case, as log frameworks write them) and a timestamp at the line start. Log
+ * lines are independent - every line ends in the initial state.
+ */
+class LogLexer implements Lexer {
+
+    private static final String[][] ERRORS = byLength("ERROR", "FATAL", "SEVERE", "CRITICAL");
+    private static final String[][] WARNINGS = byLength("WARN", "WARNING");
+    private static final String[][] INFOS = byLength("INFO", "NOTICE");
+    private static final String[][] DEBUGS = byLength("DEBUG", "TRACE", "FINE", "FINER", "FINEST");
+
+    @Override
+    public boolean spansLines() {
+        return false;
+    }
+
+    @Override
+    public int lex(CharSequence line, int state, TokenSink tokens) {
+        var length = line.length();
+        var i = timestampEnd(line);
+        if (i > 0) {
+            tokens.token(0, i, TokenType.NUMBER);
+        }
+        while (i < length) {
+            if (!Character.isLetter(line.charAt(i))) {
+                i++;
+                continue;
+            }
+            var end = i + 1;
+            while (end < length && Character.isLetter(line.charAt(end))) {
+                end++;
+            }
+            var level = level(line, i, end);
+            if (level != TokenType.PLAIN) {
+                tokens.token(i, end, level);
+            }
+            i = end;
+        }
+        return INITIAL;
+    }
+
+    private static TokenType level(CharSequence line, int start, int end) {
+        if (isOneOf(line, start, end, ERRORS)) {
+            return TokenType.ERROR;
+        }
+        if (isOneOf(line, start, end, WARNINGS)) {
+            return TokenType.WARNING;
+        }
+        if (isOneOf(line, start, end, INFOS)) {
+            return TokenType.INFO;
+        }
+        return isOneOf(line, start, end, DEBUGS) ? TokenType.DEBUG : TokenType.PLAIN;
+    }
+
+    /**
+     * end of the date and time a line starts with - digits and the separators of ISO and common log formats, the
+     * 'T' between date and time and a trailing 'Z' included. 0, if the line does not start with a digit.
+     */
+    private static int timestampEnd(CharSequence line) {
+        var i = 0;
+        var end = 0;
+        while (i < line.length()) {
+            var character = line.charAt(i);
+            if (Character.isDigit(character)) {
+                end = i + 1;
+            } else if (i == 0 || "-:.,/ TZ+".indexOf(character) < 0) {
+                break;
+            } else if (character == 'Z') {
+                end = i + 1;
+            }
+            i++;
+        }
+        return end;
+    }
+}
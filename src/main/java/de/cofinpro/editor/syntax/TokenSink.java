@@ -0,0 +1,16 @@
+package de.cofinpro.editor.syntax;
+
+/**
+ * receives the tokens of a line in order - start and end are char indexes of the line.
+ */
+@FunctionalInterface
+public interface TokenSink {
+
+    /**
+     * ignores all tokens - for lexing a line only to get the state at its end.
+     */
+    TokenSink NONE = (start, end, type) -> {
+    };
+
+    void token(int start, int end, TokenType type);
+}
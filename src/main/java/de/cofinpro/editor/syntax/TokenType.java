@@ -0,0 +1,26 @@
+package de.cofinpro.editor.syntax;
+
+/**
+ * the kinds of tokens, that are highlighted - chars not covered by a token are plain. The ordinal is the style
+ * stored for each char of a highlighted line, so PLAIN has to stay first.
+ */
+public enum TokenType {
+    PLAIN,
+    KEYWORD,
+    LITERAL,
+    STRING,
+    NUMBER,
+    COMMENT,
+    ANNOTATION,
+    KEY,
+    ERROR,
+    WARNING,
+    INFO,
+    DEBUG;
+
+    private static final TokenType[] VALUES = values();
+
+    public static TokenType of(int style) {
+        return VALUES[style];
+    }
+}
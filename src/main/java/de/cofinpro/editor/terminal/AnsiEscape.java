@@ -1,5 +1,10 @@
 package de.cofinpro.editor.terminal;
 
+import de.cofinpro.editor.syntax.TokenType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 class AnsiEscape {
 
     static final char ESC = '\033';
@@ -7,17 +12,42 @@ class AnsiEscape {
     static final String ERASE_LINE_SEQ = ESC + "[%dK";
     static final String POS_SEQ = ESC + "[%sH";
     static final String BACK_SEQ = ESC + "[D";
+    static final String BRACKETED_PASTE_ON = ESC + "[?2004h";
+    static final String BRACKETED_PASTE_OFF = ESC + "[?2004l";
+    static final int PASTE_START = 200;
     static final int CTRL_A = 1;
     static final int CTRL_E = 5;
     static final int CTRL_F = 6;
+    static final int CTRL_G = 7;
     static final int CTRL_L = 12;
     static final int CTRL_Q = 17;
     static final int CTRL_R = 18;
     static final int CTRL_S = 19;
     static final int CTRL_V = 22;
     static final int CTRL_W = 23;
+    static final int CTRL_Y = 25;
+    static final int CTRL_Z = 26;
     static final int RETURN = 13;
     static final int BACKSPACE = 127;
+    static final int SGR_RESET = 0;
+    static final int SGR_INVERTED = 7;
+    static final int SGR_RED = 31;
+    static final int SGR_GREEN = 32;
+    static final int SGR_YELLOW = 33;
+    static final int SGR_BLUE = 34;
+    static final int SGR_MAGENTA = 35;
+    static final int SGR_CYAN = 36;
+    static final int SGR_GRAY = 90;
+    static final int MAX_SEQUENCE_LENGTH = 24; // ESC [ n ; n H with two 10-digit numbers
+    private static final int CACHED_DECIMALS = 1000;
+    private static final byte[][] DECIMALS = new byte[CACHED_DECIMALS][];
+
+    static {
+        for (int i = 0; i < CACHED_DECIMALS; i++) {
+            DECIMALS[i] = Integer.toString(i).getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
     private AnsiEscape() {
         // no instances
     }
@@ -52,7 +82,7 @@ class AnsiEscape {
     }
 
     static String inverted(String message) {
-        return rendition(message, 7);
+        return rendition(message, SGR_INVERTED);
     }
 
     static String back() {
@@ -63,6 +93,91 @@ class AnsiEscape {
         return "\033[%dm%s\033[0m".formatted(colorCode, message);
     }
 
+    /**
+     * the rendition a token is highlighted with.
+     */
+    static int rendition(TokenType type) {
+        return switch (type) {
+            case PLAIN -> SGR_RESET;
+            case KEYWORD -> SGR_MAGENTA;
+            case LITERAL, NUMBER -> SGR_CYAN;
+            case STRING, INFO -> SGR_GREEN;
+            case COMMENT, DEBUG -> SGR_GRAY;
+            case ANNOTATION, WARNING -> SGR_YELLOW;
+            case KEY -> SGR_BLUE;
+            case ERROR -> SGR_RED;
+        };
+    }
+
+    /**
+     * the text with the renditions of its chars' styles (token type ordinals) - each run of one style introduced by
+     * its rendition, the last one closed by a reset. The text as is, if it has no styles.
+     */
+    static String styled(String text, byte[] styles) {
+        if (styles == null) {
+            return text;
+        }
+        var styled = new StringBuilder(text.length() + 16);
+        var style = TokenType.PLAIN.ordinal();
+        for (int i = 0; i < text.length(); i++) {
+            if (styles[i] != style) {
+                style = styles[i];
+                styled.append(ESC).append('[').append(rendition(TokenType.of(style))).append('m');
+            }
+            styled.append(text.charAt(i));
+        }
+        if (style != TokenType.PLAIN.ordinal()) {
+            styled.append(ESC).append('[').append(SGR_RESET).append('m');
+        }
+        return styled.toString();
+    }
+
+    // encoders, that write the sequences directly into the target buffer - each needs at most MAX_SEQUENCE_LENGTH
+
+    static void positionCursor(ByteBuffer target, int row, int column) {
+        putCsi(target);
+        putDecimal(target, row);
+        target.put((byte) ';');
+        putDecimal(target, column);
+        target.put((byte) 'H');
+    }
+
+    static void erase(ByteBuffer target, EraseMode mode) {
+        putCsi(target);
+        putDecimal(target, mode.ordinal());
+        target.put((byte) 'J');
+    }
+
+    static void eraseLine(ByteBuffer target, EraseMode mode) {
+        putCsi(target);
+        putDecimal(target, mode.ordinal());
+        target.put((byte) 'K');
+    }
+
+    static void rendition(ByteBuffer target, int code) {
+        putCsi(target);
+        putDecimal(target, code);
+        target.put((byte) 'm');
+    }
+
+    private static void putCsi(ByteBuffer target) {
+        target.put((byte) ESC).put((byte) '[');
+    }
+
+    private static void putDecimal(ByteBuffer target, int value) {
+        if (value < CACHED_DECIMALS) {
+            target.put(DECIMALS[value]);
+            return;
+        }
+        var divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            target.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
     enum EraseMode {
         CURSOR_TO_END,
         CURSOR_TO_BEGIN,
@@ -4,6 +4,12 @@ import lombok.Getter;
 
 import java.util.Objects;
 
+/**
+ * the visible part of the buffer: top and bottom are line indexes, left and right display columns. In soft-wrap mode
+ * lines are broken into rows of the window's width instead of scrolled horizontally - the clipping then starts with
+ * the top segment (row) of the top line and spans a number of rows, mapped to lines by the wrap index. In a filtered
+ * view top and bottom are positions in the filter index - the unfiltered top and left are kept to return to.
+ */
 @Getter
 public class Clipping {
 
@@ -14,6 +20,11 @@ public class Clipping {
     private final Refreshable terminal;
     private int horizontalScrollDist;
     private int verticalScrollDist;
+    private WrapIndex wrap;
+    private int topSegment;
+    private FilterIndex filter;
+    private int unfilteredTop;
+    private int unfilteredLeft;
 
     public Clipping(int rows, int cols, Refreshable terminal) {
         this.terminal = terminal;
@@ -23,6 +34,9 @@ public class Clipping {
     public void resize(int rows, int cols, Cursor cursor) {
         this.bottom = top + rows - 1;
         this.right = left + cols;
+        if (wrap != null) {
+            wrap.resize(cols);
+        }
         horizontalScrollDist = (right - left) / 2;
         verticalScrollDist = (bottom - top) / 2;
         if (Objects.nonNull(cursor)) {
@@ -31,22 +45,130 @@ public class Clipping {
     }
 
     public void setPosition(Cursor cursor) {
-        boolean refresh = false;
-        if (cursor.line <= top || cursor.line >= bottom) {
-            centerVertical(cursor.line);
-            refresh = true;
-        }
-        if (cursor.column <= left || cursor.column >= right) {
-            centerHorizontal(cursor.column);
-            refresh = true;
-        }
-        if (refresh) {
+        if (scrollTo(cursor)) {
             terminal.refresh();
             return;
         }
         terminal.refreshLine();
     }
 
+    /**
+     * centers the clipping on the cursor, if it is outside - without refreshing the terminal.
+     *
+     * @return true, if the clipping was moved
+     */
+    public boolean scrollTo(Cursor cursor) {
+        if (wrap != null) {
+            return scrollWrappedTo(cursor);
+        }
+        boolean moved = false;
+        var row = filter == null ? cursor.line : filter.positionOf(cursor.line - 1) + 1;
+        if (row <= top || row >= bottom) {
+            centerVertical(row);
+            moved = true;
+        }
+        var column = cursor.displayColumn();
+        if (column <= left || column >= right) {
+            centerHorizontal(column);
+            moved = true;
+        }
+        return moved;
+    }
+
+    /**
+     * switches soft wrap on (with the index of the lines' rows) or off (null) - the clipping is positioned anew.
+     */
+    void setWrap(WrapIndex wrapIndex, Cursor cursor) {
+        wrap = wrapIndex;
+        topSegment = 0;
+        right -= left;
+        left = 0;
+        if (wrap != null) {
+            wrap.resize(right);
+        }
+        scrollTo(cursor);
+        terminal.refresh();
+    }
+
+    /**
+     * shows only the lines in the filter index - or all lines again (null), at the top and left they were shown from
+     * before.
+     */
+    void setFilter(FilterIndex filterIndex, Cursor cursor) {
+        if (filterIndex != null) {
+            unfilteredTop = top;
+            unfilteredLeft = left;
+            moveTo(0, left);
+        } else {
+            moveTo(unfilteredTop, unfilteredLeft);
+        }
+        filter = filterIndex;
+        scrollTo(cursor);
+        terminal.refresh();
+    }
+
+    /**
+     * screen row (1-based) of the cursor - if it is inside the clipping.
+     */
+    int screenRow(Cursor cursor) {
+        if (filter != null) {
+            return filter.positionOf(cursor.line - 1) - top + 1;
+        }
+        if (wrap == null) {
+            return cursor.line - top;
+        }
+        return wrap.rowOf(cursor.line - 1) + segment(cursor) - wrap.rowOf(top) - topSegment + 1;
+    }
+
+    /**
+     * screen column (1-based) of the cursor - if it is inside the clipping.
+     */
+    int screenColumn(Cursor cursor) {
+        if (wrap == null) {
+            return cursor.displayColumn() - left;
+        }
+        return (cursor.displayColumn() - 1) % wrap.width() + 1;
+    }
+
+    /**
+     * the row of its line, the cursor is in - 0-based.
+     */
+    private int segment(Cursor cursor) {
+        return (cursor.displayColumn() - 1) / wrap.width();
+    }
+
+    /**
+     * centers the clipping on the cursor's row, if it is outside - walking up from it by the lines' measured rows.
+     */
+    private boolean scrollWrappedTo(Cursor cursor) {
+        var line = cursor.line - 1;
+        var segment = segment(cursor);
+        if (line >= top) {
+            topSegment = Math.min(topSegment, wrap.rows(top) - 1);
+            var row = wrap.rowOf(line) + segment - wrap.rowOf(top) - topSegment;
+            if (row >= 0 && row < bottom - top) {
+                return false;
+            }
+        }
+        var above = verticalScrollDist;
+        while (above > segment && line > 0) {
+            above -= segment + 1;
+            line--;
+            segment = wrap.rows(line) - 1;
+        }
+        bottom += line - top;
+        top = line;
+        topSegment = Math.max(0, segment - above);
+        return true;
+    }
+
+    private void moveTo(int newTop, int newLeft) {
+        bottom += newTop - top;
+        top = newTop;
+        right += newLeft - left;
+        left = newLeft;
+    }
+
     private void centerVertical(int line) {
         var newTop = Math.max(0, line - verticalScrollDist);
         bottom += newTop - top;
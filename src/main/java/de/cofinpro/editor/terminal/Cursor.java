@@ -11,20 +11,59 @@ public class Cursor {
     int line;
     int column;
 
+    /**
+     * moves the given number of wrapped rows down (negative: up) - keeping the screen column as far as possible.
+     */
+    Cursor moveRows(WrapIndex wrap, int rows) {
+        var width = wrap.width();
+        var displayColumn = displayColumn() - 1;
+        wrap.rows(line - 1);
+        var row = Math.max(0, wrap.rowOf(line - 1) + displayColumn / width + rows);
+        var target = wrap.lineAt(row);
+        var segment = Math.min(row - wrap.rowOf(target), wrap.rows(target) - 1);
+        line = target + 1;
+        column = model.getColumnAt(line, segment * width + displayColumn % width + 1);
+        return this;
+    }
+
+    /**
+     * moves the given number of lines passing the filter down (negative: up) - keeping the screen column as far as
+     * possible. A cursor on a line not passing it moves from the next one passing it.
+     */
+    Cursor moveMatches(FilterIndex filter, int lines) {
+        if (filter.size() == 0) {
+            return this;
+        }
+        var position = Math.max(0, Math.min(filter.size() - 1, filter.positionOf(line - 1) + lines));
+        var displayColumn = displayColumn();
+        line = filter.line(position) + 1;
+        column = model.getColumnAt(line, displayColumn);
+        return this;
+    }
+
     void up() {
         if (line == 1) {
             return;
         }
+        var displayColumn = displayColumn();
         line--;
-        verticalMovedCursor();
+        column = model.getColumnAt(line, displayColumn);
     }
 
     void down() {
         if (line == model.lineCount()) {
             return;
         }
+        var displayColumn = displayColumn();
         line++;
-        verticalMovedCursor();
+        column = model.getColumnAt(line, displayColumn);
+    }
+
+    /**
+     * the screen column of the cursor in its line - differing from column, if wide or zero width characters precede.
+     */
+    int displayColumn() {
+        return model.getDisplayColumn(line, column);
     }
 
     Cursor jumpToLine(int targetLine) {
@@ -42,7 +81,7 @@ public class Cursor {
 
     Cursor forward() {
         if (column <= model.getColsInLine(line)) {
-            column++;
+            column = model.getNextColumn(line, column);
             return this;
         }
         if (line == model.lineCount()) {
@@ -51,6 +90,42 @@ public class Cursor {
         return carriageReturn();
     }
 
+    /**
+     * moves one char forward - from the end of the line to the begin of the next one passing the filter, if given.
+     */
+    Cursor forward(FilterIndex filter) {
+        if (filter == null || column <= model.getColsInLine(line)) {
+            return forward();
+        }
+        var next = filter.positionOf(line - 1) + 1;
+        if (next < filter.size()) {
+            line = filter.line(next) + 1;
+            lineBegin();
+        }
+        return this;
+    }
+
+    /**
+     * moves the cursor behind the given text, that was inserted at its position.
+     */
+    Cursor skip(CharSequence text) {
+        var lastNewline = -1;
+        var newlines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lastNewline = i;
+                newlines++;
+            }
+        }
+        if (newlines == 0) {
+            column += text.length();
+        } else {
+            line += newlines;
+            column = text.length() - lastNewline;
+        }
+        return this;
+    }
+
     Cursor carriageReturn() {
         line++;
         return lineBegin();
@@ -58,7 +133,7 @@ public class Cursor {
 
     Cursor back() {
         if (column > 1) {
-            column--;
+            column = model.getPreviousColumn(line, column);
             return this;
         }
         if (line == 1) {
@@ -68,6 +143,21 @@ public class Cursor {
         return lineEnd();
     }
 
+    /**
+     * moves one char back - from the begin of the line to the end of the previous one passing the filter, if given.
+     */
+    Cursor back(FilterIndex filter) {
+        if (filter == null || column > 1) {
+            return back();
+        }
+        var previous = filter.positionOf(line - 1) - 1;
+        if (previous >= 0) {
+            line = filter.line(previous) + 1;
+            lineEnd();
+        }
+        return this;
+    }
+
     boolean isAtStartOfBuffer() {
         return line == 1 && column == 1;
     }
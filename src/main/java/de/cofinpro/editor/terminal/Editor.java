@@ -1,74 +1,169 @@
 package de.cofinpro.editor.terminal;
 
+import de.cofinpro.editor.config.EditorOptions;
+import de.cofinpro.editor.event.BackgroundTask;
+import de.cofinpro.editor.event.EventLoop;
+import de.cofinpro.editor.metrics.Counter;
+import de.cofinpro.editor.metrics.Metric;
+import de.cofinpro.editor.metrics.Metrics;
+import de.cofinpro.editor.model.DisplayWidth;
 import de.cofinpro.editor.model.EditorModel;
+import de.cofinpro.editor.model.LineListBuffer;
+import de.cofinpro.editor.model.PieceTableBuffer;
+import de.cofinpro.editor.model.TextBuffer;
 import lombok.SneakyThrows;
-import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Optional;
-import java.util.function.BiFunction;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static de.cofinpro.editor.terminal.AnsiEscape.BACKSPACE;
+import static de.cofinpro.editor.terminal.AnsiEscape.BRACKETED_PASTE_OFF;
+import static de.cofinpro.editor.terminal.AnsiEscape.BRACKETED_PASTE_ON;
 import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_A;
 import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_E;
 import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_F;
+import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_G;
 import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_L;
 import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_Q;
 import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_R;
 import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_S;
 import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_V;
 import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_W;
+import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_Y;
+import static de.cofinpro.editor.terminal.AnsiEscape.CTRL_Z;
 import static de.cofinpro.editor.terminal.AnsiEscape.ESC;
+import static de.cofinpro.editor.terminal.AnsiEscape.PASTE_START;
 import static de.cofinpro.editor.terminal.AnsiEscape.EraseMode.ALL;
 import static de.cofinpro.editor.terminal.AnsiEscape.RETURN;
 import static de.cofinpro.editor.terminal.AnsiEscape.back;
 import static de.cofinpro.editor.terminal.AnsiEscape.erase;
-import static de.cofinpro.editor.terminal.AnsiEscape.eraseLine;
 import static de.cofinpro.editor.terminal.AnsiEscape.inverted;
 import static de.cofinpro.editor.terminal.AnsiEscape.positionCursor;
 import static de.cofinpro.editor.terminal.AnsiEscape.positionCursorTopLeft;
+import static de.cofinpro.editor.terminal.TerminalInput.ESCAPE_TIMEOUT_MILLIS;
+import static de.cofinpro.editor.terminal.TerminalInput.NO_KEY;
 
-@Slf4j
 public class Editor implements Refreshable {
 
-    private static final String STATUS_PREFIX = " Jürgen's Editor: (L%d C%d) ";
+    private static final String STATUS_TITLE = " Jürgen's Editor: (L";
+    private static final String EDIT_LOG_FAILING = " [EDIT LOG FAILING - edits not crash safe]";
+    private static final long FOLLOW_POLL_MILLIS = 100;
+    private static final int HIGHLIGHT_CHUNK_LINES = 100;
+    private static final long HIGHLIGHT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final int FILTER_CHUNK_LINES = 1 << 14;
     private final EditorModel model;
     private final Clipping clipping;
     private final Cursor cursor;
+    private final ScreenRenderer renderer;
+    private final RenderCache renderCache;
+    private final Terminal terminal;
+    private final TerminalOutput output;
+    private final EventLoop events;
+    private final TerminalInput input;
+    private final StringBuilder typed = new StringBuilder();
+    private final StringBuilder statusLine = new StringBuilder();
+    private final AtomicBoolean resizePending = new AtomicBoolean();
+    private final Metrics metrics;
+    private final boolean showStats;
+    private final String statsFile;
     private String filename = "";
+    private boolean linesChanged;
     private int rows;
     private int cols;
+    private long keyStart;
+    private long paintedBytes;
+    private WrapIndex wrapIndex;
+    private FilterIndex filter;
+    private BackgroundTask<FilterIndex> filterScan;
+    private Cursor.Position unfilteredPosition;
+    private Job job;
+    private int jobPercent;
+    private boolean highlightScheduled;
 
-    public Editor() {
+    public Editor(EditorOptions options) {
+        this(options, Terminal.tty());
+    }
+
+    public Editor(EditorOptions options, Terminal terminal) {
+        this.terminal = terminal;
+        output = new TerminalOutput(terminal.screen());
+        events = new EventLoop(terminal.keys(), this::paint);
+        input = new TerminalInput(events.keys());
         setWindowSize();
-        model = new EditorModel();
+        metrics = options.measured() ? Metrics.enabled() : Metrics.DISABLED;
+        showStats = options.showStats();
+        statsFile = options.statsFile();
+        model = new EditorModel(bufferFactory(options));
+        model.setMetrics(metrics);
+        model.enableEditLog(options.editLogSyncMillis());
+        if (options.follow()) {
+            model.enableFollow();
+        }
         clipping = new Clipping(rows, cols, this);
         cursor = new Cursor(model, 1, 1);
-        LibC.INSTANCE.setRawMode();
+        renderer = new ScreenRenderer(output, rows);
+        renderCache = new RenderCache(model);
+        terminal.onResize(this::windowResized);
+        terminal.enterRawMode();
+        output.append(BRACKETED_PASTE_ON);
         refresh();
+        if (options.wrap()) {
+            toggleWrap();
+        }
+        if (!options.filename().isEmpty()) {
+            new FileHandler().openFile(options.filename());
+        }
+    }
+
+    /**
+     * the buffer, that files are loaded into: the piece table (on compressed blocks with --compress) or the line list.
+     */
+    private static Supplier<TextBuffer> bufferFactory(EditorOptions options) {
+        if (options.lineList()) {
+            return LineListBuffer::new;
+        }
+        return () -> new PieceTableBuffer(options.compress());
     }
 
     @Override
     public void refresh() {
-        log.info(erase(ALL) + clippingContents() + updateDisplayAndStatus());
+        metrics.count(Counter.FULL_REFRESH);
+        linesChanged = false;
+        renderClipping();
+        updateDisplayAndStatus();
     }
 
     @Override
     public void refreshLine() {
-        var clippedLine = model.getClippedLine(cursor.line, clipping);
-        log.info(positionStartOfLine() + eraseLine(ALL) + clippedLine + updateDisplayAndStatus());
+        if (linesChanged) { // more than the cursor's line was changed by the model update
+            refresh();
+            return;
+        }
+        metrics.count(Counter.LINE_REFRESH);
+        renderLines(cursor.line - 1); // the highlighting of the rows below may depend on the cursor's line
+        updateDisplayAndStatus();
     }
 
     @SneakyThrows
     public void run() {
         refresh();
-        int key = System.in.read();
-        while (key != CTRL_Q) {
+        int key = readCommandKey();
+        while (key != CTRL_Q && key != NO_KEY) {
             switch (key) {
                 case BACKSPACE -> backspace();
                 case RETURN -> carriageReturn();
                 case ESC -> readEscapeSequence();
                 case CTRL_W -> resizeWindow();
+                case CTRL_G -> cancelJob();
                 case CTRL_A -> beginOfLine();
                 case CTRL_E -> endOfLine();
                 case CTRL_F -> find(Direction.DOWN);
@@ -76,66 +171,320 @@ public class Editor implements Refreshable {
                 case CTRL_V -> scroll(Direction.DOWN);
                 case CTRL_S -> new FileHandler().saveBuffer();
                 case CTRL_L -> new FileHandler().loadBuffer();
+                case CTRL_Z -> restore(model::undo, "undo");
+                case CTRL_Y -> restore(model::redo, "redo");
                 default -> print(key);
             }
-            key = System.in.read();
+            key = readCommandKey();
+        }
+        close(key == CTRL_Q);
+    }
+
+    /**
+     * reads the next command key - while waiting, the events posted by workers are run and the text appended to a
+     * followed file is shown. Events are only run here (between two commands), never in the middle of one.
+     */
+    private int readCommandKey() throws IOException {
+        scheduleHighlighting();
+        paint();
+        while (!events.runUntil(this::keyArrived, model.isFollowing() ? FOLLOW_POLL_MILLIS : Long.MAX_VALUE)) {
+            if (job == null) { // a job may be reading or writing the buffer
+                followFile();
+            }
+            paint();
         }
-        close();
+        return readKey();
     }
 
+    /**
+     * lexes the lines, that were highlighted from a guessed state, in slices between keys - a slice ends after a
+     * few milliseconds or as soon as a key arrives. Repaints, once they are settled.
+     */
+    private void scheduleHighlighting() {
+        if (highlightScheduled || !model.isHighlightPending()) {
+            return;
+        }
+        highlightScheduled = true;
+        events.post(() -> {
+            highlightScheduled = false;
+            var deadline = System.nanoTime() + HIGHLIGHT_SLICE_NANOS;
+            var settled = model.advanceHighlighting(HIGHLIGHT_CHUNK_LINES);
+            while (!settled && System.nanoTime() < deadline && !input.keyPending()) {
+                settled = model.advanceHighlighting(HIGHLIGHT_CHUNK_LINES);
+            }
+            if (settled) {
+                refresh();
+            } else {
+                scheduleHighlighting();
+            }
+        });
+    }
+
+    private boolean keyArrived() {
+        return input.keyPending() || events.isInputEnded();
+    }
+
+    /**
+     * appends the followed file's new text: a cursor on the last line stays at the end of the buffer (tail mode),
+     * else only the damaged rows in view are repainted. A file truncated under unsaved edits is no longer followed.
+     */
+    private void followFile() {
+        var atEnd = filter == null
+                ? cursor.line == model.lineCount()
+                : filter.positionOf(cursor.line - 1) >= filter.size() - 1;
+        int firstChanged;
+        try {
+            firstChanged = model.followFile();
+        } catch (IOException e) {
+            updateDisplayWithStatus(" - " + e);
+            return;
+        }
+        if (firstChanged == EditorModel.FOLLOW_STOPPED) {
+            updateDisplayWithStatus(filename + " - truncated on disk, following stopped to keep the unsaved edits");
+            return;
+        }
+        if (firstChanged < 0) {
+            return;
+        }
+        if (atEnd && filter != null) {
+            cursor.moveMatches(filter, filter.size()).lineEnd();
+        } else if (atEnd) {
+            cursor.jumpEndOfBuffer();
+        } else {
+            cursor.jumpToLine(Math.min(cursor.line, model.lineCount()));
+        }
+        if (clipping.scrollTo(cursor)) {
+            refresh();
+            return;
+        }
+        renderLines(firstChanged);
+        updateDisplayAndStatus();
+    }
+
+    /**
+     * flushes the output of the last input event and reads the next key.
+     */
+    private int readKey() throws IOException {
+        paint();
+        var key = input.read();
+        keyStart = metrics.start();
+        return key;
+    }
+
+    /**
+     * writes the frame to the terminal - measured, the time since the key was read and the frame's size are recorded.
+     */
+    private void paint() {
+        output.flush();
+        if (!metrics.isEnabled()) {
+            return;
+        }
+        if (keyStart != 0) {
+            metrics.stop(Metric.INPUT_TO_PAINT, keyStart);
+            keyStart = 0;
+        }
+        var frameBytes = output.bytesWritten() - paintedBytes;
+        if (frameBytes > 0) {
+            metrics.record(Metric.FRAME_BYTES, frameBytes);
+            paintedBytes = output.bytesWritten();
+        }
+    }
+
+    /**
+     * an escape key not followed by a sequence within the timeout is taken as prefix (meta) key.
+     */
     private void readEscapeSequence() throws IOException {
-        int second = System.in.read();
+        int second = input.read(ESCAPE_TIMEOUT_MILLIS);
+        if (second == NO_KEY) {
+            updateDisplayWithStatus("ESC-");
+            second = readKey();
+        }
         switch (second) {
             case '[' -> processCsiSequence();
             case 'v' -> scroll(Direction.UP);
             case '<' -> beginOfBuffer();
             case '>' -> endOfBuffer();
+            case 's' -> findRegex();
+            case 'w' -> toggleWrap();
+            case 'f' -> filterLines();
+            case '%' -> replaceAll();
             default -> print(second);
         }
     }
 
     private void processCsiSequence() throws IOException {
-        int third = System.in.read();
-        switch (third) {
-            case 'A' -> cursor.up();
-            case 'B' -> cursor.down();
-            case 'C' -> cursor.forward();
-            case 'D' -> cursor.back();
-            default -> print(third);
+        var parameter = 0;
+        var firstParameter = true;
+        var key = input.read(ESCAPE_TIMEOUT_MILLIS);
+        while (key >= '0' && key <= ';') { // parameter bytes - only the first number is used
+            if (key == ';') {
+                firstParameter = false;
+            } else if (firstParameter && Character.isDigit(key)) {
+                parameter = parameter * 10 + key - '0';
+            }
+            key = input.read(ESCAPE_TIMEOUT_MILLIS);
+        }
+        switch (key) {
+            case 'A' -> moveVertically(-1);
+            case 'B' -> moveVertically(1);
+            case 'C' -> cursor.forward(filter);
+            case 'D' -> cursor.back(filter);
+            case '~' -> {
+                if (parameter == PASTE_START) {
+                    paste();
+                }
+                return;
+            }
+            default -> {
+                return; // unsupported or incomplete sequence
+            }
         }
         clipping.setPosition(cursor);
-        log.info(updateDisplayAndStatus());
+    }
+
+    /**
+     * moves the cursor one row up (-1) or down (1) - over the rows of wrapped lines or the lines passing the filter.
+     */
+    private void moveVertically(int direction) {
+        if (filter != null) {
+            cursor.moveMatches(filter, direction);
+        } else if (wrapIndex != null) {
+            cursor.moveRows(wrapIndex, direction);
+        } else if (direction < 0) {
+            cursor.up();
+        } else {
+            cursor.down();
+        }
+    }
+
+    private void paste() throws IOException {
+        typed.setLength(0);
+        input.readPaste(typed);
+        insertText(typed);
     }
 
     private void find(Direction direction) {
+        if (refuseWhileBusy()) {
+            return;
+        }
         var searchText = readFromStatusbar("Enter search text:");
-        BiFunction<String, Cursor.Position, Optional<Cursor.Position>> searchMethod = direction == Direction.UP
-                        ? model::searchBackwards
-                        : model::search;
-        searchMethod.apply(searchText, cursor.getPosition()).ifPresentOrElse(
-                pos -> incrementalSearch(pos, searchText),
-                () -> log.info(updateDisplayWithStatus("Not found!"))
+        startSearch(direction, (from, searchDirection, interrupted) -> searchDirection == Direction.UP
+                ? model.searchBackwards(searchText, from, interrupted)
+                : model.search(searchText, from, interrupted));
+    }
+
+    private void findRegex() {
+        if (refuseWhileBusy()) {
+            return;
+        }
+        compilePattern(readFromStatusbar("Enter regex:")).ifPresent(pattern -> startSearch(Direction.DOWN,
+                (from, searchDirection, interrupted) -> searchDirection == Direction.UP
+                        ? model.searchRegexBackwards(pattern, from, interrupted)
+                        : model.searchRegex(pattern, from, interrupted)));
+    }
+
+    private void startSearch(Direction direction, Searcher searcher) {
+        updateDisplayWithStatus("Searching... (any key cancels)");
+        search(searcher, cursor.getPosition(), direction).ifPresentOrElse(
+                pos -> incrementalSearch(pos, searcher),
+                () -> updateDisplayWithStatus(notFoundMessage())
         );
     }
 
+    /**
+     * runs the search on a worker, while the keys are watched: any key cancels it - and is read as next key. The
+     * worker measures the search, its time is recorded here on the editor's thread.
+     */
+    private Optional<Cursor.Position> search(Searcher searcher, Cursor.Position from, Direction direction) {
+        paint();
+        var shown = filter == null ? searcher : filtered(searcher, filter);
+        var task = new BackgroundTask<>(events, progress -> {
+            var start = metrics.start();
+            var found = shown.search(from, direction, progress::isCancelled);
+            return new Found(found, metrics.elapsed(start));
+        }).onDone(found -> metrics.record(Metric.SEARCH, found.nanos())).start("search");
+        events.runUntil(() -> {
+            if (input.keyPending()) {
+                task.cancel();
+            }
+            return task.isDone();
+        });
+        return task.result().flatMap(Found::position);
+    }
+
+    /**
+     * the searcher skipping the matches on lines, that do not pass the filter - it searches on from the next line in
+     * search direction passing it.
+     */
+    private Searcher filtered(Searcher searcher, FilterIndex index) {
+        return (from, direction, interrupted) -> {
+            var found = searcher.search(from, direction, interrupted);
+            while (found.isPresent() && !index.contains(found.get().line() - 1)) {
+                var position = index.positionOf(found.get().line() - 1) - (direction == Direction.UP ? 1 : 0);
+                if (position < 0 || position == index.size()) {
+                    return Optional.empty();
+                }
+                var line = index.line(position) + 1;
+                var column = direction == Direction.UP ? model.getColsInLine(line) + 1 : 1;
+                found = searcher.search(new Cursor.Position(line, column), direction, interrupted);
+            }
+            return found;
+        };
+    }
+
+    private void replaceAll() {
+        if (refuseWhileBusy() || refuseWhileFiltered()) {
+            return;
+        }
+        compilePattern(readFromStatusbar("Replace regex:")).ifPresent(pattern -> {
+            var replacement = readFromStatusbar("Replace with:");
+            try {
+                var replaced = model.replaceAll(pattern, replacement);
+                cursor.jumpToLine(cursor.line); // the cursor's line may have become shorter
+                linesChanged = true;
+                clipping.setPosition(cursor);
+                updateDisplayWithStatus("Replaced %d matches".formatted(replaced));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                updateDisplayWithStatus(" - " + e.getMessage());
+            }
+        });
+    }
+
+    private Optional<Pattern> compilePattern(String regex) {
+        try {
+            return Optional.of(Pattern.compile(regex));
+        } catch (PatternSyntaxException e) {
+            updateDisplayWithStatus(" - invalid regex: " + e.getDescription());
+            return Optional.empty();
+        }
+    }
+
+    private String notFoundMessage() {
+        return input.keyPending() ? "Search cancelled!" : "Not found!";
+    }
+
     @SneakyThrows
-    private void incrementalSearch(Cursor.Position pos, String searchText) {
+    private void incrementalSearch(Cursor.Position pos, Searcher searcher) {
         clipping.setPosition(cursor.setPosition(pos));
-        log.info(updateDisplayWithStatus("n -> find next; p -> find previous; q -> quit"));
-        int key = System.in.read();
+        updateDisplayWithStatus("n -> find next; p -> find previous; q -> quit");
+        int key = readKey();
         while (key != 'q') {
-            if (key == 'n' && !findForward(searchText) || key == 'p' && !findBackward(searchText)) {
+            if (key == 'n' && !findForward(searcher) || key == 'p' && !findBackward(searcher)) {
                 break;
             }
             clipping.setPosition(cursor);
-            log.info(updateDisplayWithStatus("n -> find next; p -> find previous; q -> quit"));
-            key = System.in.read();
+            updateDisplayWithStatus("n -> find next; p -> find previous; q -> quit");
+            key = readKey();
+        }
+        if (key == 'q') {
+            updateDisplayAndStatus();
+        } else {
+            updateDisplayWithStatus(notFoundMessage());
         }
-        log.info(key == 'q' ? updateDisplayAndStatus() : updateDisplayWithStatus("Not found!"));
     }
 
-    private boolean findBackward(String searchText) {
-        var positionOpt = model.searchBackwards(searchText, cursor.getPosition());
+    private boolean findBackward(Searcher searcher) {
+        var positionOpt = search(searcher, cursor.getPosition(), Direction.UP);
         if (positionOpt.isEmpty()) {
             return false;
         } else {
@@ -144,8 +493,8 @@ public class Editor implements Refreshable {
         return true;
     }
 
-    private boolean findForward(String searchText) {
-        var positionOpt = model.search(searchText, cursor.forward().getPosition());
+    private boolean findForward(Searcher searcher) {
+        var positionOpt = search(searcher, cursor.forward().getPosition(), Direction.DOWN);
         if (positionOpt.isEmpty()) {
             cursor.back();
             return false;
@@ -160,7 +509,9 @@ public class Editor implements Refreshable {
     }
 
     private void beginOfBuffer() {
-        clipping.setPosition(cursor.jumpBeginOfBuffer());
+        clipping.setPosition(filter == null
+                ? cursor.jumpBeginOfBuffer()
+                : cursor.moveMatches(filter, -filter.size()).lineBegin());
     }
 
     private void endOfLine() {
@@ -168,114 +519,421 @@ public class Editor implements Refreshable {
     }
 
     private void endOfBuffer() {
-        clipping.setPosition(cursor.jumpEndOfBuffer());
+        clipping.setPosition(filter == null
+                ? cursor.jumpEndOfBuffer()
+                : cursor.moveMatches(filter, filter.size()).lineEnd());
     }
 
     private void scroll(Direction direction) {
+        if (filter != null) {
+            clipping.setPosition(cursor.moveMatches(filter, direction == Direction.UP ? 1 - rows : rows - 1));
+            return;
+        }
+        if (wrapIndex != null) {
+            clipping.setPosition(cursor.moveRows(wrapIndex, direction == Direction.UP ? 1 - rows : rows - 1));
+            return;
+        }
         cursor.jumpToLine(direction == Direction.UP
                 ? Math.max(1, cursor.line - rows + 1)
                 : Math.min(model.lineCount(), cursor.line + rows - 1));
         clipping.setPosition(cursor);
     }
 
-    private void print(int ascii) {
-        if (ascii > 31 && ascii < 187) {
-            printChar((char) ascii);
+    private void print(int key) throws IOException {
+        if (TerminalInput.isPrintable(key)) {
+            typed.setLength(0);
+            input.readCharacter(key, typed);
+            input.drainPrintable(typed);
+            insertText(typed);
         } else {
-            printAscii(ascii);
+            printAscii(key);
         }
     }
 
     private void printAscii(int ascii) {
-        log.info(updateDisplayWithStatus(" symbol (%d)".formatted(ascii)));
+        updateDisplayWithStatus(" symbol (%d)".formatted(ascii));
     }
 
-    private void printChar(char character) {
-        model.insert(character, cursor);
-        clipping.setPosition(cursor.forward());
+    /**
+     * inserts typed ahead or pasted text as one batch - with a single repaint.
+     */
+    private void insertText(CharSequence text) {
+        if (refuseWhileBusy() || refuseWhileFiltered()) {
+            return;
+        }
+        var line = cursor.line;
+        model.insert(text, cursor);
+        linesChanged = cursor.skip(text).line != line;
+        clipping.setPosition(cursor);
     }
 
     private void carriageReturn() {
+        if (refuseWhileBusy() || refuseWhileFiltered()) {
+            return;
+        }
         var column = cursor.column;
         model.insertLine(cursor.carriageReturn().line, column);
+        linesChanged = true;
         clipping.setPosition(cursor);
-        refresh(); // needed as two lines need refresh (not only the one which is handled by setPosition)
     }
 
     private void backspace() {
-        if (cursor.isAtStartOfBuffer()) {
+        if (cursor.isAtStartOfBuffer() || refuseWhileBusy() || refuseWhileFiltered()) {
             return;
         }
         model.deleteCharAt(cursor.back());
+        linesChanged = true;
         clipping.setPosition(cursor);
-        refresh(); // needed as two lines need refresh (not only the one which is handled by setPosition)
     }
 
-    private String clippingContents() {
-        var sb = new StringBuilder();
-        var contents = model.getClippingContent(clipping);
-        for (int i = 0; i < contents.size(); i++) {
-            sb.append(positionCursor(i + 1, 1))
-                    .append(contents.get(i));
+    /**
+     * moves the cursor to the position of an undone or redone change - repainting the clipping.
+     */
+    private void restore(Supplier<Optional<Cursor.Position>> step, String action) {
+        if (refuseWhileBusy() || refuseWhileFiltered()) {
+            return;
+        }
+        step.get().ifPresentOrElse(pos -> {
+            linesChanged = true;
+            clipping.setPosition(cursor.setPosition(pos));
+        }, () -> updateDisplayWithStatus(" - nothing to " + action));
+    }
+
+    /**
+     * renders the rows of the clipping from the given line index on.
+     */
+    private void renderLines(int from) {
+        if (filter != null) {
+            renderFiltered(); // the lines from there on may pass the filter or not
+            return;
+        }
+        if (wrapIndex != null) {
+            renderWrapped(); // the rows of the lines from there on may have moved
+            return;
+        }
+        var top = clipping.getTop();
+        for (int i = Math.max(from, top); i < clipping.getBottom(); i++) {
+            renderRow(i - top + 1, i + 1);
+        }
+    }
+
+    private void renderClipping() {
+        if (filter != null) {
+            renderFiltered();
+            return;
+        }
+        if (wrapIndex != null) {
+            renderWrapped();
+            return;
+        }
+        var top = clipping.getTop();
+        for (int i = 0; i < rows - 1; i++) {
+            renderRow(i + 1, top + i + 1);
+        }
+    }
+
+    /**
+     * renders the rows of the wrapped lines from the clipping's top segment on - each row the part of a line
+     * between multiples of the window's width.
+     */
+    private void renderWrapped() {
+        var line = clipping.getTop();
+        var segment = clipping.getTopSegment();
+        for (int row = 1; row < rows; row++) {
+            if (line >= model.lineCount()) {
+                renderer.row(row, "");
+                continue;
+            }
+            renderer.row(row, renderCache.get(line + 1, segment * cols, (segment + 1) * cols));
+            if (++segment == wrapIndex.rows(line)) {
+                line++;
+                segment = 0;
+            }
+        }
+    }
+
+    /**
+     * renders the lines passing the filter from the clipping's top position on.
+     */
+    private void renderFiltered() {
+        var top = clipping.getTop();
+        for (int row = 1; row < rows; row++) {
+            var position = top + row - 1;
+            if (position < filter.size()) {
+                renderer.row(row, renderCache.get(filter.line(position) + 1, clipping));
+            } else {
+                renderer.row(row, "");
+            }
         }
-        return sb.toString();
     }
 
-    private String updateDisplayAndStatus() {
-        return updateDisplayWithStatus(filename);
+    /**
+     * renders the line (1-based) into the row - through the render cache, so that an unchanged line is neither
+     * clipped nor diffed again.
+     */
+    private void renderRow(int row, int line) {
+        if (line <= model.lineCount()) {
+            renderer.row(row, renderCache.get(line, clipping));
+        } else {
+            renderer.row(row, "");
+        }
     }
 
-    private String updateDisplayWithStatus(String status) {
-        var statusMessage = STATUS_PREFIX.formatted(cursor.line, cursor.column) + status;
-        return positionCursor(rows, 1)
-               + inverted(statusMessage + " ".repeat(cols - statusMessage.length()))
-               + placeCursor();
+    private void updateDisplayAndStatus() {
+        if (job != null) {
+            updateDisplayWithStatus(job.status(jobPercent));
+        } else if (filter != null) {
+            updateDisplayWithStatus("%s [%d lines matching %s]"
+                    .formatted(filename, filter.size(), filter.getPattern()));
+        } else {
+            updateDisplayWithStatus(filename);
+        }
     }
 
-    private String placeCursor() {
-        var row = cursor.line - clipping.getTop();
-        var column = cursor.column - clipping.getLeft();
-        return positionCursor(row, column);
+    /**
+     * renders the status bar and writes the frame collected so far - with the cursor placed - to the terminal.
+     */
+    private void updateDisplayWithStatus(String status) {
+        statusLine.setLength(0);
+        statusLine.append(STATUS_TITLE).append(cursor.line).append(" C").append(cursor.column).append(") ")
+                .append(status);
+        if (model.isEditLogFailing()) {
+            statusLine.append(EDIT_LOG_FAILING);
+        }
+        if (showStats) {
+            metrics.appendSummary(statusLine);
+        }
+        for (int width = DisplayWidth.of(statusLine); width < cols; width++) {
+            statusLine.append(' ');
+        }
+        renderer.status(statusLine);
+        renderer.finish(clipping.screenRow(cursor), clipping.screenColumn(cursor));
     }
 
-    private String positionStartOfLine() {
-        return positionCursor(cursor.line - clipping.getTop(), 1);
+    /**
+     * called by the terminal on any thread: a burst of resize signals (while a window is dragged) posts one resize
+     * event only - it repaints once for the size current, when it runs.
+     */
+    private void windowResized() {
+        if (resizePending.compareAndSet(false, true)) {
+            events.post(() -> {
+                resizePending.set(false);
+                resizeWindow();
+            });
+        }
+    }
+
+    /**
+     * switches soft wrap on or off - the wrap index follows the model's changes only while wrapping.
+     */
+    private void toggleWrap() {
+        if (filter != null) {
+            updateDisplayWithStatus(" - no soft wrap in a filtered view");
+            return;
+        }
+        if (wrapIndex == null) {
+            wrapIndex = new WrapIndex(model, cols);
+            model.addListener(wrapIndex);
+        } else {
+            model.removeListener(wrapIndex);
+            wrapIndex = null;
+        }
+        clipping.setWrap(wrapIndex, cursor);
+    }
+
+    /**
+     * shows only the lines matching a regex - or all lines again, if a filter is set. The lines are scanned as the
+     * editor's job: the view shows the matches found so far, starting with the first one.
+     */
+    private void filterLines() {
+        if (filter != null) {
+            clearFilter();
+            return;
+        }
+        if (refuseWhileBusy()) {
+            return;
+        }
+        if (wrapIndex != null) {
+            updateDisplayWithStatus(" - no filtered view in soft-wrap mode");
+            return;
+        }
+        compilePattern(readFromStatusbar("Filter regex:")).ifPresent(this::startFilter);
+    }
+
+    private void startFilter(Pattern pattern) {
+        var index = new FilterIndex(model, pattern);
+        filter = index;
+        unfilteredPosition = cursor.getPosition();
+        model.addListener(index);
+        var lineCount = model.lineCount();
+        filterScan = startJob(new Job("Filtering", true, false), progress -> {
+            for (int from = 0; from < lineCount; from += FILTER_CHUNK_LINES) {
+                progress.checkCancelled();
+                var to = Math.min(from + FILTER_CHUNK_LINES, lineCount);
+                var matches = model.getMatchingLines(pattern, from, to);
+                events.post(() -> filtered(index, matches, to));
+                progress.report(to, lineCount);
+            }
+            return index;
+        }, scanned -> {
+            if (scanned == filter && scanned.size() == 0) {
+                clearFilter();
+                updateDisplayWithStatus("No lines match!");
+            } else {
+                updateDisplayAndStatus();
+            }
+        });
+        clipping.setFilter(index, cursor);
+    }
+
+    /**
+     * takes on the matches of a chunk scanned - the cursor moves to the first one found, the rows are repainted, as
+     * long as they are not filled.
+     */
+    private void filtered(FilterIndex index, int[] matches, int scannedTo) {
+        if (index != filter) {
+            return; // cleared meanwhile
+        }
+        var shown = index.size() < clipping.getBottom();
+        index.append(matches, scannedTo);
+        if (matches.length == 0) {
+            return;
+        }
+        if (!index.contains(cursor.line - 1)) {
+            clipping.setPosition(cursor.moveMatches(index, -index.size()).lineBegin());
+        } else if (shown) {
+            refresh();
+        }
+    }
+
+    /**
+     * shows all lines again - at once at the position, they were filtered from. A running scan is cancelled.
+     */
+    private void clearFilter() {
+        filterScan.cancel();
+        model.removeListener(filter);
+        filter = null;
+        clipping.setFilter(null, cursor.setPosition(unfilteredPosition));
+    }
+
+    /**
+     * true, if the buffer must not be changed, because only the lines passing a filter are shown.
+     */
+    private boolean refuseWhileFiltered() {
+        if (filter == null) {
+            return false;
+        }
+        updateDisplayWithStatus(" - filtered view (Esc-F shows all lines)");
+        return true;
     }
 
     private void resizeWindow() {
         setWindowSize();
+        renderer.resize(rows);
         clipping.resize(rows, cols, cursor);
         refresh();
     }
 
     private void setWindowSize() {
-        var processOutput = new SttyCommand().run();
-        var tokens = processOutput.split(" ");
-        rows = Integer.parseInt(tokens[0].trim());
-        cols = Integer.parseInt(tokens[1].trim());
+        var size = terminal.windowSize();
+        rows = size.rows();
+        cols = size.cols();
     }
 
-    private void close() {
-        log.info(erase(ALL) + positionCursorTopLeft());
-        LibC.INSTANCE.setNormalMode();
+    /**
+     * runs the work as the editor's job - while it works on the buffer in the background, edits are refused, but
+     * moving, scrolling and quitting stay possible. Its progress is shown in the status bar.
+     */
+    private <T> BackgroundTask<T> startJob(Job newJob, BackgroundTask.Work<T> work, JobResult<T> result) {
+        var task = new BackgroundTask<>(events, work);
+        job = newJob.of(task);
+        jobPercent = 0;
+        task.onProgress(percent -> {
+            jobPercent = percent;
+            updateDisplayAndStatus();
+        }).onDone(value -> {
+            job = null;
+            try {
+                result.accept(value);
+            } catch (IOException e) {
+                updateDisplayWithStatus(" - " + e);
+            }
+        }).onFailure(e -> {
+            job = null;
+            updateDisplayWithStatus(e instanceof CancellationException
+                    ? newJob.label() + " cancelled"
+                    : " - " + e);
+        }).start(newJob.label());
+        updateDisplayAndStatus();
+        return task;
+    }
+
+    /**
+     * true, if the buffer must not be changed, because a job is working on it - the status tells why.
+     */
+    private boolean refuseWhileBusy() {
+        if (job == null) {
+            return false;
+        }
+        updateDisplayWithStatus(job.status(jobPercent) + " - please wait");
+        return true;
+    }
+
+    private void cancelJob() {
+        if (job != null && job.cancellable()) {
+            job.task().cancel();
+            updateDisplayWithStatus(job.label() + " - cancelling...");
+        } else {
+            updateDisplayAndStatus();
+        }
+    }
+
+    /**
+     * on exit a running load is cancelled, a running save is waited for.
+     */
+    private void endJob() {
+        if (job == null) {
+            return;
+        }
+        if (job.awaitedOnExit()) {
+            updateDisplayWithStatus(job.label() + " - finishing before exit");
+            paint();
+            events.runUntil(job.task()::isDone);
+        } else {
+            job.task().cancel();
+        }
+    }
+
+    private void close(boolean quit) throws IOException {
+        endJob();
+        model.close(quit);
+        output.append(BRACKETED_PASTE_OFF).append(erase(ALL)).append(positionCursorTopLeft()).flush();
+        terminal.leaveRawMode();
+        if (!statsFile.isEmpty()) {
+            metrics.writeReport(Path.of(statsFile));
+        }
     }
 
     @SneakyThrows
     private String readFromStatusbar(String prompt) {
-        log.info(positionCursor(rows, 1)
-                 + inverted(prompt + " ".repeat(cols - prompt.length()))
-                 + positionCursor(rows, prompt.length() + 2));
+        output.append(positionCursor(rows, 1))
+                .append(inverted(prompt + " ".repeat(cols - prompt.length())))
+                .append(positionCursor(rows, prompt.length() + 2));
+        renderer.invalidateStatus();
         var builder = new StringBuilder();
-        int key = System.in.read();
+        int key = readKey();
         while (key != RETURN) {
             if (!builder.isEmpty() && key == BACKSPACE) {
-                log.info(back() + inverted(" ") + back());
-                builder.deleteCharAt(builder.length() - 1);
-            } else if (key > 31 && key < BACKSPACE) { // allowed chars
-                log.info(inverted("{}"), (char) key);
-                builder.append((char) key);
+                var codePoint = builder.codePointBefore(builder.length());
+                builder.setLength(builder.length() - Character.charCount(codePoint));
+                var width = DisplayWidth.of(codePoint);
+                output.append(back().repeat(width)).append(inverted(" ".repeat(width))).append(back().repeat(width));
+            } else if (TerminalInput.isPrintable(key)) {
+                var start = builder.length();
+                input.readCharacter(key, builder);
+                output.append(inverted(builder.substring(start)));
             }
-            key = System.in.read();
+            key = readKey();
         }
         return builder.toString();
     }
@@ -285,29 +943,106 @@ public class Editor implements Refreshable {
         DOWN
     }
 
+    @FunctionalInterface
+    private interface Searcher {
+        Optional<Cursor.Position> search(Cursor.Position from, Direction direction, BooleanSupplier interrupted);
+    }
+
+    private record Found(Optional<Cursor.Position> position, long nanos) {
+    }
+
+    @FunctionalInterface
+    private interface JobResult<T> {
+        void accept(T result) throws IOException;
+    }
+
+    /**
+     * background work on the buffer, shown in the status bar.
+     */
+    private record Job(String label, boolean cancellable, boolean awaitedOnExit, BackgroundTask<?> task) {
+
+        private Job(String label, boolean cancellable, boolean awaitedOnExit) {
+            this(label, cancellable, awaitedOnExit, null);
+        }
+
+        private Job of(BackgroundTask<?> startedTask) {
+            return new Job(label, cancellable, awaitedOnExit, startedTask);
+        }
+
+        private String status(int percent) {
+            return "%s... %d%%%s".formatted(label, percent, cancellable ? " (Ctrl-G cancels)" : "");
+        }
+    }
+
     private class FileHandler {
         private void loadBuffer() {
-            filename = readFromStatusbar("Enter filename:");
+            if (refuseWhileBusy() || refuseWhileFiltered()) {
+                return;
+            }
+            load(readFromStatusbar("Enter filename:"));
+        }
+
+        /**
+         * opens the file given on the command line - waiting for it to be read, but not for a background index. A
+         * file not existing yet is created on save.
+         */
+        private void openFile(String name) {
+            if (Files.exists(Path.of(name))) {
+                events.runUntil(load(name)::isDone);
+                return;
+            }
+            filename = name;
             try {
-                model.loadFromFile(filename);
-                positionCursorTopLeft();
+                var recovered = model.recoverEdits(name);
                 clipping.setPosition(cursor.topLeft());
                 refresh();
+                showRecovered(recovered);
             } catch (IOException e) {
                 filename = "";
-                log.info(updateDisplayWithStatus(" - " + e));
+                updateDisplayWithStatus(" - " + e);
+            }
+        }
+
+        /**
+         * reads the file on a worker, while the current buffer stays shown - then shows the file. A mapped file still
+         * indexed in the background stays the job, until its index is complete.
+         */
+        private BackgroundTask<EditorModel.LoadedFile> load(String name) {
+            return startJob(new Job("Loading " + name, true, false), progress -> model.readFile(name, progress),
+                    loaded -> {
+                        filename = name;
+                        var recovered = model.install(loaded);
+                        clipping.setPosition(cursor.topLeft());
+                        refresh();
+                        showRecovered(recovered);
+                        if (!loaded.isComplete()) {
+                            startJob(new Job("Indexing " + name, false, false), progress -> {
+                                loaded.awaitComplete(progress);
+                                return loaded;
+                            }, indexed -> refresh());
+                        }
+                    });
+        }
+
+        private void showRecovered(int recovered) {
+            if (recovered > 0) {
+                updateDisplayWithStatus("%s - recovered %d unsaved edits".formatted(filename, recovered));
             }
         }
 
+        /**
+         * writes the buffer on a worker - edits wait for it to finish.
+         */
         private void saveBuffer() {
-            filename = readFromStatusbar("Enter filename:");
-            try {
-                model.saveToFile(filename);
-                refresh();
-            } catch (IOException e) {
-                filename = "";
-                log.info(updateDisplayWithStatus(" - " + e));
+            if (refuseWhileBusy()) {
+                return;
             }
+            var name = readFromStatusbar("Enter filename:");
+            startJob(new Job("Saving " + name, true, true), progress -> model.writeFile(name, progress), nanos -> {
+                filename = name;
+                model.saved(name, nanos);
+                refresh();
+            });
         }
 
     }
@@ -0,0 +1,95 @@
+package de.cofinpro.editor.terminal;
+
+import de.cofinpro.editor.model.EditorModel;
+import de.cofinpro.editor.model.LineChangeListener;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * index of the lines matching a filter pattern - the positions of the filtered view. It is built by a scan on a
+ * worker, whose matches are appended chunk by chunk on the editor's thread, so that the view is shown and scrolled
+ * before the scan is done. The line indexes (0-based) are kept ascending in an int array: the line at a position is a
+ * lookup, the position of a line a binary search. While it is added as the model's listener, changed lines are scanned
+ * again - e.g. the lines appended to a followed file.
+ */
+class FilterIndex implements LineChangeListener {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final EditorModel model;
+    @Getter
+    private final Pattern pattern;
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int size;
+    private int scanned;
+
+    FilterIndex(EditorModel model, Pattern pattern) {
+        this.model = model;
+        this.pattern = pattern;
+    }
+
+    /**
+     * number of lines passing the filter - found so far.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * the line index at the position.
+     */
+    int line(int position) {
+        return lines[position];
+    }
+
+    /**
+     * position of the first line passing the filter at or after the line index - size(), if there is none.
+     */
+    int positionOf(int line) {
+        var position = Arrays.binarySearch(lines, 0, size, line);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    boolean contains(int line) {
+        return Arrays.binarySearch(lines, 0, size, line) >= 0;
+    }
+
+    /**
+     * appends the matching lines of the next chunk scanned - all lines before scannedTo are scanned then.
+     */
+    void append(int[] matches, int scannedTo) {
+        ensureCapacity(size + matches.length);
+        System.arraycopy(matches, 0, lines, size, matches.length);
+        size += matches.length;
+        scanned = scannedTo;
+    }
+
+    @Override
+    public void linesChanged(int line, int removed, int added) {
+        if (line >= scanned) {
+            return; // the scan has yet to get there
+        }
+        var from = positionOf(line);
+        var to = positionOf(line + removed);
+        var matches = model.getMatchingLines(pattern, line, line + added);
+        ensureCapacity(size - (to - from) + matches.length);
+        System.arraycopy(lines, to, lines, from + matches.length, size - to);
+        System.arraycopy(matches, 0, lines, from, matches.length);
+        size += matches.length - (to - from);
+        var delta = added - removed;
+        if (delta != 0) {
+            for (int i = from + matches.length; i < size; i++) {
+                lines[i] += delta;
+            }
+            scanned += delta;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > lines.length) {
+            lines = Arrays.copyOf(lines, Math.max(capacity, 2 * lines.length));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package de.cofinpro.editor.terminal;
+
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * terminal without a tty: keys are read from any stream, the screen output goes to any channel and the window has a
+ * fixed size - for replays, tests and benchmarks.
+ */
+public record HeadlessTerminal(InputStream keys, WritableByteChannel screen, WindowSize windowSize)
+        implements Terminal {
+
+    @Override
+    public void enterRawMode() {
+        // no tty to switch
+    }
+
+    @Override
+    public void leaveRawMode() {
+        // no tty to switch
+    }
+}
@@ -2,6 +2,8 @@ package de.cofinpro.editor.terminal;
 
 import com.sun.jna.Library;
 import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
 import com.sun.jna.Structure;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
@@ -17,6 +19,7 @@ public interface LibC extends Library {
     // load the C standard library for POSIX systems
     LibC INSTANCE = Native.load("c", LibC.class);
     int STDIN_FD = 0;
+    int STDOUT_FD = 1;
     int TCSAFLUSH = 2;
     long ISIG = 0x80;
     long ICANON = 0x100;
@@ -28,11 +31,19 @@ public interface LibC extends Library {
     long RAW_TOGGLE_LFLAGS = ECHO | ICANON | IEXTEN | ISIG;
     long RAW_TOGGLE_IFLAGS = IXON | ICRNL;
     long RAW_TOGGLE_OFLAGS = OPOST;
+    // _IOR('t', 104, struct winsize) on BSD / macOS - a plain number on Linux
+    NativeLong TIOCGWINSZ = new NativeLong(Platform.isMac() ? 0x40087468L : 0x5413L);
 
     int tcgetattr(int fildes, TermIos termIosP);
 
     int tcsetattr(int fildes, int optionalActions, TermIos termIosP);
 
+    /**
+     * variadic in C - bound as such, so that the argument is passed where the platform's calling convention puts
+     * variadic ones (on the stack for macOS on arm64).
+     */
+    int ioctl(int fildes, NativeLong request, Object... args);
+
     String strerror(int errno);
 
     default void setRawMode() {
@@ -53,6 +64,39 @@ public interface LibC extends Library {
         }
     }
 
+    /**
+     * the window size by ioctl(TIOCGWINSZ) on stdout - or on stdin, if stdout is redirected. No child process needed.
+     */
+    default WinSize getWindowSize() {
+        var winSize = new WinSize();
+        if (INSTANCE.ioctl(STDOUT_FD, TIOCGWINSZ, winSize) != 0) {
+            var returnCode = INSTANCE.ioctl(STDIN_FD, TIOCGWINSZ, winSize);
+            if (returnCode != 0) {
+                TermIos.errorExit(returnCode, "ioctl");
+            }
+        }
+        return winSize;
+    }
+
+    @NoArgsConstructor
+    @EqualsAndHashCode(callSuper = false)
+    @Structure.FieldOrder({"wsRow", "wsCol", "wsXpixel", "wsYpixel"})
+    class WinSize extends Structure implements Structure.ByReference { // from ttycom.h / ioctl-types.h
+
+        public short wsRow;                //rows, in characters
+        public short wsCol;                //columns, in characters
+        public short wsXpixel;             //horizontal size, pixels - unused
+        public short wsYpixel;             //vertical size, pixels - unused
+
+        int rows() {
+            return Short.toUnsignedInt(wsRow);
+        }
+
+        int cols() {
+            return Short.toUnsignedInt(wsCol);
+        }
+    }
+
     @NoArgsConstructor
     @EqualsAndHashCode(callSuper = false)
     @Structure.FieldOrder({"cIflag", "cOflag", "cCflag", "cLflag", "cCc", "cIspeed", "cOspeed"})
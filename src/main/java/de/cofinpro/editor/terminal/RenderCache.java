@@ -0,0 +1,90 @@
+package de.cofinpro.editor.terminal;
+
+import de.cofinpro.editor.model.EditorModel;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * clipped lines as rendered, keyed by line, line version, the lexer state at the line start (its highlighting depends
+ * on) and the clipping's columns - a repaint after a cursor move or an edit of one line gets the very same text for
+ * every unchanged row, so that neither clipping nor diffing it allocates anything. The entries are direct mapped by
+ * line and refilled in place on a miss. Their UTF-8 bytes (with the renditions of the highlighting) are encoded once,
+ * when a row is first written as a whole - e.g. after scrolling - and reused from then on.
+ */
+class RenderCache {
+
+    private static final int SLOTS = 1 << 10;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final EditorModel model;
+    private final Entry[] entries = new Entry[SLOTS];
+
+    RenderCache(EditorModel model) {
+        this.model = model;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            entries[slot] = new Entry();
+        }
+    }
+
+    /**
+     * the entry of the line (1-based) in the clipping - refilled, if the line or the clipping's columns changed.
+     */
+    Entry get(int line, Clipping clipping) {
+        return get(line, clipping.getLeft(), clipping.getRight());
+    }
+
+    /**
+     * the entry of the line's part between the display columns left and right - the rows of a wrapped line are
+     * spread over the slots by their left column.
+     */
+    Entry get(int line, int left, int right) {
+        var entry = entries[(line + 31 * left) & SLOT_MASK];
+        var version = model.getLineVersion(line);
+        var state = model.getLineState(line);
+        if (entry.line != line || entry.version != version || entry.state != state
+                || entry.left != left || entry.right != right) {
+            entry.line = line;
+            entry.version = version;
+            entry.state = state;
+            entry.left = left;
+            entry.right = right;
+            entry.text = model.getClippedLine(line, left, right);
+            entry.styles = model.getClippedStyles(line, left, right);
+            entry.bytes = null;
+        }
+        return entry;
+    }
+
+    static final class Entry {
+
+        private int line = -1;
+        private long version;
+        private int state;
+        private int left;
+        private int right;
+        private String text;
+        private byte[] styles;
+        private byte[] bytes;
+
+        String text() {
+            return text;
+        }
+
+        /**
+         * token type ordinals of the text's chars - null, if it is not highlighted.
+         */
+        byte[] styles() {
+            return styles;
+        }
+
+        /**
+         * the text encoded with its renditions - on first use.
+         */
+        byte[] bytes() {
+            if (bytes == null) {
+                bytes = AnsiEscape.styled(text, styles).getBytes(StandardCharsets.UTF_8);
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package de.cofinpro.editor.terminal;
+
+import de.cofinpro.editor.model.DisplayWidth;
+import de.cofinpro.editor.syntax.TokenType;
+
+import java.util.Arrays;
+
+import static de.cofinpro.editor.terminal.AnsiEscape.EraseMode.ALL;
+import static de.cofinpro.editor.terminal.AnsiEscape.EraseMode.CURSOR_TO_END;
+import static de.cofinpro.editor.terminal.AnsiEscape.SGR_INVERTED;
+import static de.cofinpro.editor.terminal.AnsiEscape.SGR_RESET;
+
+/**
+ * screen diff renderer: keeps the last frame written to the terminal (texts and highlighting styles) and only emits
+ * the escape sequences and characters of the changed spans of a row - positioned by display columns, so that wide
+ * and combining characters keep their places. All output goes to the terminal output's buffer - encoded in place, so
+ * that rendering a frame does not allocate.
+ */
+class ScreenRenderer {
+
+    private final TerminalOutput output;
+    private final StringBuilder statusLine = new StringBuilder();
+    private boolean statusValid;
+    private String[] frame;
+    private byte[][] frameStyles;
+    private int rows;
+
+    ScreenRenderer(TerminalOutput output, int rows) {
+        this.output = output;
+        resize(rows);
+    }
+
+    /**
+     * forgets the last frame - the next frame starts by erasing the screen and redraws all non-empty rows.
+     */
+    void resize(int rows) {
+        this.rows = rows;
+        frame = new String[rows - 1];
+        frameStyles = new byte[rows - 1][];
+        Arrays.fill(frame, "");
+        statusValid = false;
+        output.erase(ALL);
+    }
+
+    void invalidateStatus() {
+        statusValid = false;
+    }
+
+    /**
+     * diffs the text row (1-based) against the last frame and writes the output for the changed span.
+     */
+    void row(int row, String content) {
+        row(row, content, null, null);
+    }
+
+    /**
+     * renders the cached line into the row - the cached text is the same instance as long as the line is unchanged,
+     * so an unchanged row costs one comparison. A row rewritten as a whole gets the cached bytes.
+     */
+    void row(int row, RenderCache.Entry line) {
+        row(row, line.text(), line.styles(), line);
+    }
+
+    /**
+     * @param styles token type ordinals of the content's chars - null for plain text; a char counts as changed, if
+     *               its style changed
+     */
+    private void row(int row, String content, byte[] styles, RenderCache.Entry line) {
+        var previous = frame[row - 1];
+        var previousStyles = frameStyles[row - 1];
+        if (content.equals(previous) && sameStyles(styles, previousStyles, content.length())) {
+            return;
+        }
+        var common = commonPrefixLength(previous, previousStyles, content, styles);
+        output.positionCursor(row, DisplayWidth.of(content, 0, common) + 1);
+        var end = content.length();
+        if (end == previous.length()) {
+            while (content.charAt(end - 1) == previous.charAt(end - 1)
+                    && style(styles, end - 1) == style(previousStyles, end - 1)) {
+                end--;
+            }
+            while (!DisplayWidth.isGraphemeStart(content, end) || !DisplayWidth.isGraphemeStart(previous, end)) {
+                end++;
+            }
+        }
+        if (end < content.length()
+                && DisplayWidth.of(content, common, end) == DisplayWidth.of(previous, common, end)) {
+            append(content, styles, common, end); // the unchanged rest keeps its columns
+        } else {
+            if (common == 0 && line != null) {
+                output.write(line.bytes());
+            } else {
+                append(content, styles, common, content.length());
+            }
+            if (DisplayWidth.of(content) < DisplayWidth.of(previous)) {
+                output.eraseLine(CURSOR_TO_END);
+            }
+        }
+        frame[row - 1] = content;
+        frameStyles[row - 1] = styles;
+    }
+
+    /**
+     * appends the chars between start and end like AnsiEscape.styled() - plain text as is.
+     */
+    private void append(String content, byte[] styles, int start, int end) {
+        if (styles == null) {
+            output.append(content, start, end);
+            return;
+        }
+        var style = TokenType.PLAIN.ordinal();
+        var run = start;
+        for (int i = start; i < end; i++) {
+            if (styles[i] != style) {
+                output.append(content, run, i);
+                style = styles[i];
+                output.rendition(AnsiEscape.rendition(TokenType.of(style)));
+                run = i;
+            }
+        }
+        output.append(content, run, end);
+        if (style != TokenType.PLAIN.ordinal()) {
+            output.rendition(SGR_RESET);
+        }
+    }
+
+    void status(CharSequence text) {
+        if (statusValid && CharSequence.compare(statusLine, text) == 0) {
+            return;
+        }
+        output.positionCursor(rows, 1).rendition(SGR_INVERTED).append(text).rendition(SGR_RESET);
+        statusLine.setLength(0);
+        statusLine.append(text);
+        statusValid = true;
+    }
+
+    void finish(int cursorRow, int cursorColumn) {
+        output.positionCursor(cursorRow, cursorColumn);
+    }
+
+    private static int style(byte[] styles, int index) {
+        return styles == null ? TokenType.PLAIN.ordinal() : styles[index];
+    }
+
+    /**
+     * true, if the first chars have the same styles - no styles meaning all plain.
+     */
+    private static boolean sameStyles(byte[] styles, byte[] others, int length) {
+        if (styles == others) {
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            if (style(styles, i) != style(others, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * length of the common prefix - cut back to a grapheme start, so that the changed span starts with whole
+     * characters.
+     */
+    private static int commonPrefixLength(String previous, byte[] previousStyles, String content, byte[] styles) {
+        var max = Math.min(previous.length(), content.length());
+        int i = 0;
+        while (i < max && previous.charAt(i) == content.charAt(i) && style(previousStyles, i) == style(styles, i)) {
+            i++;
+        }
+        while (!DisplayWidth.isGraphemeStart(content, i) || !DisplayWidth.isGraphemeStart(previous, i)) {
+            i--;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,38 @@
+package de.cofinpro.editor.terminal;
+
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * the device the editor runs on: source of the key bytes, sink of the screen output and provider of the window size.
+ * The editor itself never touches a tty - so it can be driven headless by a key stream.
+ */
+public interface Terminal {
+
+    static Terminal tty() {
+        return new TtyTerminal();
+    }
+
+    InputStream keys();
+
+    WritableByteChannel screen();
+
+    /**
+     * the current size - asked on start and on every resize.
+     */
+    WindowSize windowSize();
+
+    /**
+     * registers a listener called on every change of the window size - on any thread.
+     */
+    default void onResize(Runnable listener) {
+        // the size never changes
+    }
+
+    void enterRawMode();
+
+    void leaveRawMode();
+
+    record WindowSize(int rows, int cols) {
+    }
+}
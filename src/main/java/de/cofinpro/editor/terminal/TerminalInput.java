@@ -0,0 +1,186 @@
+package de.cofinpro.editor.terminal;
+
+import de.cofinpro.editor.model.Utf8Decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static de.cofinpro.editor.terminal.AnsiEscape.ESC;
+
+/**
+ * buffered keyboard input: stdin is read in bulk, so that everything the terminal sent at once (typed ahead keys,
+ * escape sequences, pastes) is consumed from memory. Reads inside escape sequences may time out, pastes bracketed
+ * by ESC[200~ ... ESC[201~ are collected as a whole. Keys and pastes are decoded as UTF-8 - a multi-byte character
+ * split between two reads is completed by the next one.
+ */
+class TerminalInput {
+
+    static final long ESCAPE_TIMEOUT_MILLIS = 50;
+    static final int NO_KEY = -1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] PASTE_END = {ESC, '[', '2', '0', '1', '~'};
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final Utf8Decoder decoder = new Utf8Decoder();
+    private int position;
+    private int limit;
+    private int lastPasted;
+
+    TerminalInput(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * next key - blocks until input is available, NO_KEY at end of input.
+     */
+    int read() throws IOException {
+        if (position == limit) {
+            limit = Math.max(0, in.read(buffer));
+            position = 0;
+            if (limit == 0) {
+                return NO_KEY;
+            }
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    /**
+     * next key, if one arrives within the timeout - NO_KEY else.
+     */
+    int read(long timeoutMillis) throws IOException {
+        if (position == limit) {
+            var deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+            while (in.available() == 0) {
+                if (System.nanoTime() >= deadline || !pause()) {
+                    return NO_KEY;
+                }
+            }
+        }
+        return read();
+    }
+
+    private static boolean pause() {
+        try {
+            Thread.sleep(1);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * true, if a key is buffered or waiting to be read - never blocks.
+     */
+    boolean keyPending() {
+        try {
+            return position < limit || in.available() > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * appends all printable characters, that are already buffered completely, to the target - without blocking.
+     */
+    void drainPrintable(StringBuilder target) {
+        while (position < limit) {
+            var key = buffer[position] & 0xff;
+            if (key < 0x80) {
+                if (!isPrintable(key)) {
+                    return;
+                }
+                target.append((char) key);
+                position++;
+                continue;
+            }
+            var length = Utf8Decoder.sequenceLength(key);
+            if (length < 0 || position + length > limit || !isSequence(position, length)) {
+                return; // an incomplete sequence is completed by readCharacter
+            }
+            for (int i = 0; i < length; i++) {
+                decoder.decode(buffer[position++] & 0xff, target);
+            }
+        }
+    }
+
+    private boolean isSequence(int start, int length) {
+        for (int i = start + 1; i < start + length; i++) {
+            if (!Utf8Decoder.isContinuation(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * appends the character starting with the printable key - reading the rest of a UTF-8 sequence, if it is a lead
+     * byte. A sequence cut off by a timeout or an invalid byte is appended as replacement character.
+     */
+    void readCharacter(int key, StringBuilder target) throws IOException {
+        decoder.decode(key, target);
+        while (decoder.isPending()) {
+            var next = read(ESCAPE_TIMEOUT_MILLIS);
+            if (next == NO_KEY || !Utf8Decoder.isContinuation(next)) {
+                if (next != NO_KEY) {
+                    position--; // not part of the sequence - read again as next key
+                }
+                decoder.finish(target);
+                return;
+            }
+            decoder.decode(next, target);
+        }
+    }
+
+    /**
+     * true for printable ASCII keys and lead bytes of UTF-8 sequences.
+     */
+    static boolean isPrintable(int key) {
+        return key > 31 && key != AnsiEscape.BACKSPACE && Utf8Decoder.sequenceLength(key) > 0;
+    }
+
+    /**
+     * collects a bracketed paste up to its end sequence - UTF-8 decoded, line breaks normalized to newlines, tabs to
+     * blanks and other control characters dropped.
+     */
+    void readPaste(StringBuilder target) throws IOException {
+        lastPasted = NO_KEY;
+        int matched = 0;
+        while (matched < PASTE_END.length) {
+            var key = read();
+            if (key == NO_KEY) {
+                return;
+            }
+            if (key == PASTE_END[matched]) {
+                matched++;
+                continue;
+            }
+            for (int i = 1; i < matched; i++) {
+                appendPasted(target, PASTE_END[i]);
+            }
+            matched = key == ESC ? 1 : 0;
+            if (matched == 0) {
+                appendPasted(target, key);
+            }
+        }
+        decoder.finish(target);
+    }
+
+    private void appendPasted(StringBuilder target, int key) {
+        var previous = lastPasted;
+        lastPasted = key;
+        if (key >= 0x80) {
+            decoder.decode(key, target);
+            return;
+        }
+        decoder.finish(target);
+        if (key == '\r' || key == '\n' && previous != '\r') {
+            target.append('\n');
+        } else if (key == '\t') {
+            target.append(' ');
+        } else if (key >= ' ' && key != AnsiEscape.BACKSPACE) {
+            target.append((char) key);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package de.cofinpro.editor.terminal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * sink for all screen output: text is encoded (ASCII directly, else UTF-8) into one reusable direct buffer, that is
+ * written to the terminal's screen channel on flush - once per input event - or when it is full.
+ */
+class TerminalOutput {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private long bytesWritten;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    TerminalOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    TerminalOutput append(CharSequence text) {
+        return append(text, 0, text.length());
+    }
+
+    TerminalOutput append(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            var character = text.charAt(i);
+            if (character < 0x80) {
+                put((byte) character);
+            } else {
+                i = encode(text, i, end);
+            }
+        }
+        return this;
+    }
+
+    TerminalOutput append(char character) {
+        if (character < 0x80) {
+            put((byte) character);
+            return this;
+        }
+        encode(String.valueOf(character), 0, 1);
+        return this;
+    }
+
+    /**
+     * appends bytes encoded before.
+     */
+    TerminalOutput write(byte[] bytes) {
+        var offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            var count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+        return this;
+    }
+
+    TerminalOutput positionCursor(int row, int column) {
+        ensureRemaining(AnsiEscape.MAX_SEQUENCE_LENGTH);
+        AnsiEscape.positionCursor(buffer, row, column);
+        return this;
+    }
+
+    TerminalOutput erase(AnsiEscape.EraseMode mode) {
+        ensureRemaining(AnsiEscape.MAX_SEQUENCE_LENGTH);
+        AnsiEscape.erase(buffer, mode);
+        return this;
+    }
+
+    TerminalOutput eraseLine(AnsiEscape.EraseMode mode) {
+        ensureRemaining(AnsiEscape.MAX_SEQUENCE_LENGTH);
+        AnsiEscape.eraseLine(buffer, mode);
+        return this;
+    }
+
+    TerminalOutput rendition(int code) {
+        ensureRemaining(AnsiEscape.MAX_SEQUENCE_LENGTH);
+        AnsiEscape.rendition(buffer, code);
+        return this;
+    }
+
+    /**
+     * encodes the non-ASCII run starting at the given index and returns the index of its last character.
+     */
+    private int encode(CharSequence text, int start, int limit) {
+        var end = start + 1;
+        while (end < limit && text.charAt(end) >= 0x80) {
+            end++;
+        }
+        var chars = CharBuffer.wrap(text, start, end);
+        encoder.reset();
+        while (encoder.encode(chars, buffer, true).isOverflow()) {
+            flush();
+        }
+        return end - 1;
+    }
+
+    private void put(byte value) {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(value);
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+    }
+
+    /**
+     * number of bytes written to the channel so far.
+     */
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    void flush() {
+        buffer.flip();
+        bytesWritten += buffer.remaining();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+}
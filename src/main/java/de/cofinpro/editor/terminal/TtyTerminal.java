@@ -0,0 +1,58 @@
+package de.cofinpro.editor.terminal;
+
+import lombok.extern.slf4j.Slf4j;
+import sun.misc.Signal;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * the real terminal: stdin and stdout, switched to raw mode by libc - the size is taken from ioctl(TIOCGWINSZ), a
+ * resize is signalled by SIGWINCH.
+ */
+@Slf4j
+class TtyTerminal implements Terminal {
+
+    private static final String WINDOW_CHANGE_SIGNAL = "WINCH";
+
+    @Override
+    public InputStream keys() {
+        return new FileInputStream(FileDescriptor.in);
+    }
+
+    @Override
+    public WritableByteChannel screen() {
+        return new FileOutputStream(FileDescriptor.out).getChannel();
+    }
+
+    @Override
+    public WindowSize windowSize() {
+        var winSize = LibC.INSTANCE.getWindowSize();
+        return new WindowSize(winSize.rows(), winSize.cols());
+    }
+
+    /**
+     * the JVM runs the handler on a thread of its own for every SIGWINCH.
+     */
+    @Override
+    public void onResize(Runnable listener) {
+        try {
+            Signal.handle(new Signal(WINDOW_CHANGE_SIGNAL), signal -> listener.run());
+        } catch (IllegalArgumentException e) {
+            log.warn("no SIGWINCH on this platform - resize by Ctrl-W only");
+        }
+    }
+
+    @Override
+    public void enterRawMode() {
+        LibC.INSTANCE.setRawMode();
+    }
+
+    @Override
+    public void leaveRawMode() {
+        LibC.INSTANCE.setNormalMode();
+    }
+}
@@ -0,0 +1,208 @@
+package de.cofinpro.editor.terminal;
+
+import de.cofinpro.editor.model.EditorModel;
+import de.cofinpro.editor.model.LineChangeListener;
+
+import java.util.Arrays;
+
+/**
+ * index from lines to screen rows in soft-wrap mode: a line of display width w takes w / width + 1 rows - so that the
+ * cursor behind its last char has a place. The row counts of the lines are summed up in a Fenwick tree, that is
+ * extended lazily up to the line or row asked for: the first row of a line and the line of a row are O(log n), so is
+ * a line changing its row count. Lines inserted or removed shift the counts behind them - the tree is rebuilt from
+ * there in one pass over the int arrays, no line is measured again. Lines are measured exactly, when they are shown or
+ * the cursor moves over them - the tree is extended over unmeasured lines by their char count (exact for ASCII
+ * lines), that is corrected, when a line is measured. A resize drops all counts. Indexes are 0-based here.
+ * The index only follows the model's changes while it is added as its listener - i.e. while wrapping. Lines a file
+ * still indexed in the background grows by are taken on, when asked for.
+ */
+class WrapIndex implements LineChangeListener {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final EditorModel model;
+    private int width;
+    private int size;
+    private int[] counts = new int[INITIAL_CAPACITY]; // exact, -estimate or 0 for a line not in the tree yet
+    private int[] tree = new int[INITIAL_CAPACITY + 1];
+    private int valid;
+    private int total;
+
+    WrapIndex(EditorModel model, int width) {
+        this.model = model;
+        this.width = width;
+        size = model.lineCount();
+        ensureCapacity(size);
+    }
+
+    int width() {
+        return width;
+    }
+
+    /**
+     * wraps at the new width - all lines are measured anew, when asked for.
+     */
+    void resize(int newWidth) {
+        if (newWidth != width) {
+            width = newWidth;
+            Arrays.fill(counts, 0);
+            valid = 0;
+            total = 0;
+        }
+    }
+
+    @Override
+    public void linesChanged(int line, int removed, int added) {
+        if (removed == added && line < valid) {
+            for (int i = line; i < line + added; i++) {
+                if (i < valid) {
+                    var estimate = estimate(i);
+                    add(i, estimate - Math.abs(counts[i]));
+                    counts[i] = -estimate;
+                } else {
+                    counts[i] = 0;
+                }
+            }
+            return;
+        }
+        var moved = Math.max(0, size - line - removed);
+        ensureCapacity(size + added - removed);
+        System.arraycopy(counts, line + removed, counts, line + added, moved);
+        Arrays.fill(counts, line, line + added, 0);
+        size = line + added + moved;
+        if (line + removed >= valid) {
+            valid = Math.min(valid, line); // the nodes up to the line do not cover any line behind it
+            total = prefix(valid);
+            return;
+        }
+        valid += added - removed;
+        for (int i = line; i < line + added; i++) {
+            counts[i] = -estimate(i);
+        }
+        rebuildFrom(line);
+    }
+
+    /**
+     * number of rows the line takes - measured exactly.
+     */
+    int rows(int line) {
+        grow();
+        if (counts[line] <= 0) {
+            var exact = model.getLineWidth(line + 1) / width + 1;
+            if (line < valid) {
+                add(line, exact + counts[line]);
+            }
+            counts[line] = exact;
+        }
+        return counts[line];
+    }
+
+    /**
+     * first row of the line.
+     */
+    int rowOf(int line) {
+        grow();
+        while (valid < line) {
+            extend();
+        }
+        return prefix(line);
+    }
+
+    /**
+     * the line, that the row belongs to - the last line, if the row is behind it.
+     */
+    int lineAt(int row) {
+        grow();
+        while (valid < size && total <= row) {
+            extend();
+        }
+        var line = 0;
+        var rest = row;
+        for (int step = Integer.highestOneBit(Math.max(1, valid)); step > 0; step >>= 1) {
+            if (line + step <= valid && tree[line + step] <= rest) { // whole lines up to line + step end before it
+                line += step;
+                rest -= tree[line];
+            }
+        }
+        return Math.min(line, size - 1);
+    }
+
+    private void grow() {
+        var lineCount = model.lineCount();
+        if (lineCount > size) {
+            ensureCapacity(lineCount);
+            Arrays.fill(counts, size, lineCount, 0);
+            size = lineCount;
+        }
+    }
+
+    /**
+     * appends the next line to the tree - its node sums up its children, which are complete already.
+     */
+    private void extend() {
+        if (counts[valid] == 0) {
+            counts[valid] = -estimate(valid);
+        }
+        var value = Math.abs(counts[valid]);
+        var node = valid + 1;
+        tree[node] = value;
+        for (int step = 1; step < (node & -node); step <<= 1) {
+            tree[node] += tree[node - step];
+        }
+        valid = node;
+        total += value;
+    }
+
+    /**
+     * rebuilds the nodes behind the line: they are reset to their own counts, the nodes up to the line still valid
+     * are added to their parents behind it, then each node to its parent in ascending order.
+     */
+    private void rebuildFrom(int line) {
+        for (int node = line + 1; node <= valid; node++) {
+            tree[node] = Math.abs(counts[node - 1]);
+        }
+        for (int node = line; node > 0; node -= node & -node) {
+            var parent = node + (node & -node);
+            if (parent <= valid) {
+                tree[parent] += tree[node];
+            }
+        }
+        for (int node = line + 1; node <= valid; node++) {
+            var parent = node + (node & -node);
+            if (parent <= valid) {
+                tree[parent] += tree[node];
+            }
+        }
+        total = prefix(valid);
+    }
+
+    private void add(int line, int delta) {
+        for (int node = line + 1; node <= valid; node += node & -node) {
+            tree[node] += delta;
+        }
+        total += delta;
+    }
+
+    /**
+     * number of rows of the lines before the given one.
+     */
+    private int prefix(int line) {
+        var sum = 0;
+        for (int node = line; node > 0; node -= node & -node) {
+            sum += tree[node];
+        }
+        return sum;
+    }
+
+    private int estimate(int line) {
+        return model.getColsInLine(line + 1) / width + 1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > counts.length) {
+            var newCapacity = Math.max(capacity, 2 * counts.length);
+            counts = Arrays.copyOf(counts, newCapacity);
+            tree = Arrays.copyOf(tree, newCapacity + 1);
+        }
+    }
+}
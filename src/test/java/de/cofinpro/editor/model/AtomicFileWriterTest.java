@@ -0,0 +1,53 @@
+package de.cofinpro.editor.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AtomicFileWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesTransfersAndEncodedTextInOrder() throws IOException {
+        var source = Files.writeString(directory.resolve("source.txt"), "héllo wörld");
+        var target = directory.resolve("target.txt");
+        try (var channel = FileChannel.open(source, StandardOpenOption.READ);
+             var writer = new AtomicFileWriter(target, StandardCharsets.UTF_8)) {
+            writer.transfer(channel, 0, 3);
+            writer.transfer(channel, 3, 4); // coalesces with the one before
+            writer.write("中\uD83D", 0, 2); // the high surrogate is kept back
+            writer.write("\uDE00!", 0, 2);
+            writer.transfer(channel, 7, Files.size(source) - 7);
+            writer.write('\n');
+            writer.commit();
+        }
+        assertEquals("héllo 中😀!wörld\n", Files.readString(target));
+    }
+
+    @Test
+    void refusesAnUnpairedSurrogateAndKeepsTheTarget() throws IOException {
+        var source = Files.writeString(directory.resolve("source.txt"), "new");
+        var target = Files.writeString(directory.resolve("target.txt"), "old");
+        try (var channel = FileChannel.open(source, StandardOpenOption.READ);
+             var writer = new AtomicFileWriter(target, StandardCharsets.UTF_8)) {
+            writer.write("a\uD83D", 0, 2);
+            assertThrows(IOException.class, () -> writer.transfer(channel, 0, 3));
+        }
+        assertEquals("old", Files.readString(target));
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(source, target), files.sorted().toList());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.event.Progress;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static de.cofinpro.editor.model.CompressedSource.BLOCK_CHARS;
+import static de.cofinpro.editor.model.CompressedSource.MAX_BLOCK_CHARS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompressedSourceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsCrLfTogetherWhereALongLineIsCut() throws IOException {
+        var content = "a".repeat(MAX_BLOCK_CHARS - 1) + "\r\nb";
+        assertText("a".repeat(MAX_BLOCK_CHARS - 1) + "\nb", load(content));
+    }
+
+    @Test
+    void keepsSurrogatePairsTogetherWhereALongLineIsCut() throws IOException {
+        var content = "x" + "😀".repeat(MAX_BLOCK_CHARS) + "\nend";
+        assertText(content, load(content));
+    }
+
+    @Test
+    void cutsBlocksBehindNewlines() throws IOException {
+        var random = new Random(1);
+        var content = new StringBuilder();
+        var expected = new StringBuilder();
+        while (content.length() < 5 * BLOCK_CHARS) {
+            var line = "é😀 line ".repeat(random.nextInt(20)) + content.length();
+            var lineBreak = switch (random.nextInt(3)) {
+                case 0 -> "\r\n";
+                case 1 -> "\r";
+                default -> "\n";
+            };
+            content.append(line).append(lineBreak);
+            expected.append(line).append('\n');
+        }
+        var source = load(content.toString());
+        assertText(expected.toString(), source);
+        for (int i = 0; i < 100; i++) { // ranges across block boundaries
+            var from = random.nextInt(expected.length());
+            var to = Math.min(expected.length(), from + random.nextInt(3 * BLOCK_CHARS));
+            var range = new StringBuilder();
+            source.appendTo(range, from, to);
+            assertEquals(expected.substring(from, to), range.toString());
+        }
+    }
+
+    @Test
+    void countsTheBytesRead() throws IOException {
+        var content = "ä\r\n".repeat(BLOCK_CHARS);
+        assertEquals(4L * BLOCK_CHARS, load(content).fileLength());
+    }
+
+    private CompressedSource load(String content) throws IOException {
+        var file = Files.writeString(directory.resolve("compressed.txt"), content);
+        return CompressedSource.load(file, Progress.NONE);
+    }
+
+    private static void assertText(String expected, CompressedSource source) {
+        assertEquals(expected.length(), source.length());
+        var text = new StringBuilder();
+        source.appendTo(text, 0, source.length());
+        assertEquals(expected, text.toString());
+        var newlines = (int) expected.chars().filter(c -> c == '\n').count();
+        assertEquals(newlines, source.newlinesBetween(0, source.length()));
+        var offset = expected.indexOf('\n');
+        for (int n = 1; n <= newlines; n++) {
+            assertEquals(offset, source.newlineOffset(0, n));
+            offset = expected.indexOf('\n', offset + 1);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package de.cofinpro.editor.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class EditLogTest {
+
+    private static final String CONTENT = "first line\nsecond line\nthird line";
+    private static final int LOADED = CONTENT.length();
+    private static final int HEADER_SIZE = 32;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysAllKindsOfRecords() throws IOException {
+        var document = document();
+        var edited = buffer();
+        try (var log = EditLog.open(document, 0)) {
+            assertEquals(0, log.replay(buffer(), LOADED));
+            edit(log, edited);
+        }
+        var recovered = buffer();
+        try (var log = EditLog.open(document, 0)) {
+            assertEquals(7, log.replay(recovered, LOADED));
+        }
+        assertEquals(text(edited), text(recovered));
+    }
+
+    @Test
+    void appendsBehindTheReplayedRecords() throws IOException {
+        var document = document();
+        try (var log = EditLog.open(document, 0)) {
+            log.replay(buffer(), LOADED);
+            log.insert(0, 0, 'a');
+        }
+        try (var log = EditLog.open(document, 0)) {
+            assertEquals(1, log.replay(buffer(), LOADED));
+            log.insert(0, 0, 'b');
+        }
+        var recovered = buffer();
+        try (var log = EditLog.open(document, 0)) {
+            assertEquals(2, log.replay(recovered, LOADED));
+        }
+        assertEquals("bafirst line", recovered.line(0).toString());
+    }
+
+    @Test
+    void cutsOffATornTail() throws IOException {
+        var document = document();
+        try (var log = EditLog.open(document, 0)) {
+            log.replay(buffer(), LOADED);
+            log.insert(0, 0, "intact");
+            log.insert(1, 0, "torn");
+        }
+        var walFile = wal(document);
+        var size = Files.size(walFile);
+        try (var channel = FileChannel.open(walFile, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+        var recovered = buffer();
+        try (var log = EditLog.open(document, 0)) {
+            assertEquals(1, log.replay(recovered, LOADED));
+        }
+        assertEquals("intactfirst line", recovered.line(0).toString());
+        assertEquals("second line", recovered.line(1).toString());
+        var tornRecord = 5 * Integer.BYTES + 1 + "torn".length() * Character.BYTES;
+        assertEquals(size - tornRecord, Files.size(walFile));
+    }
+
+    @Test
+    void cutsOffACorruptRecord() throws IOException {
+        var document = document();
+        try (var log = EditLog.open(document, 0)) {
+            log.replay(buffer(), LOADED);
+            log.insert(0, 0, 'a');
+            log.insert(0, 1, 'b');
+        }
+        var walFile = wal(document);
+        var bytes = Files.readAllBytes(walFile);
+        bytes[bytes.length - 6]++; // the second record's char
+        Files.write(walFile, bytes);
+        var recovered = buffer();
+        try (var log = EditLog.open(document, 0)) {
+            assertEquals(1, log.replay(recovered, LOADED));
+        }
+        assertEquals("afirst line", recovered.line(0).toString());
+    }
+
+    @Test
+    void resetsTheLogOfAnotherDocumentVersion() throws IOException {
+        var document = document();
+        try (var log = EditLog.open(document, 0)) {
+            log.replay(buffer(), LOADED);
+            log.insert(0, 0, 'x');
+        }
+        Files.writeString(document, CONTENT + "\nappended");
+        var recovered = buffer();
+        try (var log = EditLog.open(document, 0)) {
+            assertEquals(0, log.replay(recovered, LOADED));
+        }
+        assertEquals(HEADER_SIZE, Files.size(wal(document)));
+        assertEquals("first line", recovered.line(0).toString());
+    }
+
+    @Test
+    void replaysTheFollowedTextInBetweenTheEdits() throws IOException {
+        var document = document();
+        var edited = buffer();
+        try (var log = EditLog.open(document, 0)) {
+            log.replay(buffer(), LOADED);
+            log.follow(new FileFollower.Position(LOADED, false));
+            log.insert(2, 0, 'x');
+            edited.insert(2, 0, 'x');
+            Files.writeString(document, "\nfollowed", StandardOpenOption.APPEND);
+            log.append("\nfollowed", new FileFollower.Position(Files.size(document), false));
+            edited.append("\nfollowed");
+            var contents = new CharSequence[] {"edited"};
+            log.replaceLines(new int[] {3}, contents, 1);
+            edited.replaceLines(new int[] {3}, contents, 1);
+        }
+        var followed = Files.size(document);
+        Files.writeString(document, "\nnot yet followed", StandardOpenOption.APPEND);
+        var recovered = new PieceTableBuffer();
+        recovered.replaceBy(Files.readString(document));
+        try (var log = EditLog.open(document, 0)) {
+            assertEquals(3, log.replay(recovered, Files.size(document)));
+            assertEquals(Optional.of(new FileFollower.Position(followed, false)), log.followedPosition());
+        }
+        assertEquals(text(edited), text(recovered));
+    }
+
+    @Test
+    void resetsTheLogOfAFollowedDocumentRewritten() throws IOException {
+        var document = document();
+        try (var log = EditLog.open(document, 0)) {
+            log.replay(buffer(), LOADED);
+            log.follow(new FileFollower.Position(LOADED, false));
+            log.insert(0, 0, 'x');
+        }
+        Files.writeString(document, "rewritten " + CONTENT);
+        try (var log = EditLog.open(document, 0)) {
+            assertEquals(0, log.replay(buffer(), LOADED));
+        }
+        assertEquals(HEADER_SIZE, Files.size(wal(document)));
+    }
+
+    @Test
+    void groupCommitWritesTheRecordsOnClose() throws IOException {
+        var document = document();
+        var edited = buffer();
+        try (var log = EditLog.open(document, 60_000)) {
+            log.replay(buffer(), LOADED);
+            edit(log, edited);
+        }
+        var recovered = buffer();
+        try (var log = EditLog.open(document, 0)) {
+            assertEquals(7, log.replay(recovered, LOADED));
+        }
+        assertEquals(text(edited), text(recovered));
+    }
+
+    @Test
+    void deleteRemovesTheLog() throws IOException {
+        var document = document();
+        var log = EditLog.open(document, 0);
+        log.replay(buffer(), LOADED);
+        log.insert(0, 0, 'x');
+        log.delete();
+        assertFalse(Files.exists(wal(document)));
+    }
+
+    /**
+     * records one edit of each kind - and applies it to the buffer.
+     */
+    private static void edit(EditLog log, TextBuffer buffer) {
+        log.insert(0, 5, '!');
+        buffer.insert(0, 5, '!');
+        log.insert(1, 0, "new\ntext ");
+        buffer.insert(1, 0, "new\ntext ");
+        log.deleteCharAt(0, 0);
+        buffer.deleteCharAt(0, 0);
+        log.delete(2, 2, 12);
+        buffer.delete(2, 2, 12);
+        log.splitLine(0, 3);
+        buffer.splitLine(0, 3);
+        log.joinWithNext(1);
+        buffer.joinWithNext(1);
+        var lines = new int[] {0, 2};
+        var contents = new CharSequence[] {"replaced", "also replaced"};
+        log.replaceLines(lines, contents, 2);
+        buffer.replaceLines(lines, contents, 2);
+    }
+
+    private Path document() throws IOException {
+        return Files.writeString(directory.resolve("document.txt"), CONTENT);
+    }
+
+    private static Path wal(Path document) {
+        return document.resolveSibling(".document.txt.wal");
+    }
+
+    private static TextBuffer buffer() {
+        var buffer = new PieceTableBuffer();
+        buffer.replaceBy(CONTENT);
+        return buffer;
+    }
+
+    private static String text(TextBuffer buffer) {
+        var text = new StringBuilder();
+        for (int line = 0; line < buffer.lineCount(); line++) {
+            text.append(buffer.line(line)).append('\n');
+        }
+        return text.toString();
+    }
+}
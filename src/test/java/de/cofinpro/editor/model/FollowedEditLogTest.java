@@ -0,0 +1,99 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.terminal.Cursor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * a followed file is edited while it grows, then the session crashes - and the file grows on: the next session has
+ * to recover the edits and the followed text in the order they were made.
+ */
+class FollowedEditLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversEditsOnFollowedText() throws IOException {
+        var file = Files.writeString(directory.resolve("followed.log"), "one\ntwo\n");
+        var expected = crashWhileFollowing(file);
+        Files.writeString(file, "five\r\n", StandardOpenOption.APPEND);
+        var recovered = model(true);
+        assertEquals(6, recovered.loadFromFile(file.toString()));
+        recovered.followFile();
+        expected.add(expected.size() - 1, "five");
+        assertEquals(expected, lines(recovered));
+    }
+
+    @Test
+    void recoversEditsOnFollowedTextWithoutFollowing() throws IOException {
+        var file = Files.writeString(directory.resolve("followed.log"), "one\ntwo\n");
+        var expected = crashWhileFollowing(file);
+        Files.writeString(file, "five\n", StandardOpenOption.APPEND);
+        var recovered = model(false);
+        assertEquals(6, recovered.loadFromFile(file.toString()));
+        expected.add(expected.size() - 1, "five");
+        assertEquals(expected, lines(recovered));
+    }
+
+    @Test
+    void followsOnWithoutEdits() throws IOException {
+        var file = Files.writeString(directory.resolve("followed.log"), "one\n");
+        var model = model(true);
+        model.loadFromFile(file.toString());
+        Files.writeString(file, "two\n", StandardOpenOption.APPEND);
+        model.followFile();
+        Files.writeString(file, "three\n", StandardOpenOption.APPEND);
+        var recovered = model(true);
+        assertEquals(0, recovered.loadFromFile(file.toString()));
+        assertEquals(List.of("one", "two", "three", ""), lines(recovered));
+    }
+
+    /**
+     * edits the loaded lines and the followed ones in between the appends - the model is dropped without closing.
+     *
+     * @return the lines shown at the crash
+     */
+    private static List<String> crashWhileFollowing(Path file) throws IOException {
+        var model = model(true);
+        assertEquals(0, model.loadFromFile(file.toString()));
+        model.insert('X', new Cursor(model, 1, 1));
+        Files.writeString(file, "thr", StandardOpenOption.APPEND);
+        model.followFile();
+        Files.writeString(file, "ee\r", StandardOpenOption.APPEND);
+        model.followFile();
+        model.insert('Y', new Cursor(model, 3, 3));
+        Files.writeString(file, "\nfour\n", StandardOpenOption.APPEND);
+        model.followFile();
+        model.deleteCharAt(new Cursor(model, 2, 1));
+        var lines = lines(model);
+        assertEquals(List.of("Xone", "wo", "thYree", "four", ""), lines);
+        return lines;
+    }
+
+    private static EditorModel model(boolean follow) {
+        var model = new EditorModel();
+        model.enableEditLog(0);
+        if (follow) {
+            model.enableFollow();
+        }
+        return model;
+    }
+
+    private static List<String> lines(EditorModel model) {
+        var lines = new ArrayList<String>();
+        for (int line = 1; line <= model.lineCount(); line++) {
+            lines.add(model.getClippedLine(line, 0, Integer.MAX_VALUE));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,65 @@
+package de.cofinpro.editor.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LineOffsetsTest {
+
+    @Test
+    void findsOffsetsLikeABinarySearch() {
+        var random = new Random(1);
+        var expected = new long[1000];
+        var offsets = new LineOffsets();
+        long offset = 0;
+        for (int i = 0; i < expected.length; i++) {
+            offset += 1 + random.nextInt(100) + (i % 300 == 0 ? 3L << 32 : 0); // some blocks span over 4 GB
+            expected[i] = offset;
+            offsets.add(offset);
+        }
+        assertEquals(expected.length, offsets.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], offsets.get(i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            var position = (long) (random.nextDouble() * (offset + 10));
+            assertEquals(firstAtOrAfter(expected, position), offsets.firstIndexAtOrAfter(position));
+        }
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(i, offsets.firstIndexAtOrAfter(expected[i]));
+            assertEquals(i + 1, offsets.firstIndexAtOrAfter(expected[i] + 1));
+        }
+    }
+
+    @Test
+    void countsOffsetsInARange() {
+        var offsets = new LineOffsets();
+        for (long offset = 10; offset <= 1000; offset += 10) {
+            offsets.add(offset);
+        }
+        assertEquals(100, offsets.countBetween(0, 1001));
+        assertEquals(10, offsets.countBetween(10, 110));
+        assertEquals(0, offsets.countBetween(11, 20));
+        assertEquals(0, offsets.countBetween(1001, 2000));
+    }
+
+    @Test
+    void clearStartsOver() {
+        var offsets = new LineOffsets();
+        offsets.add(5);
+        offsets.add(7);
+        offsets.clear();
+        offsets.add(3);
+        assertEquals(1, offsets.size());
+        assertEquals(3, offsets.get(0));
+        assertEquals(1, offsets.firstIndexAtOrAfter(5));
+    }
+
+    private static int firstAtOrAfter(long[] offsets, long position) {
+        var index = Arrays.binarySearch(offsets, position);
+        return index >= 0 ? index : -index - 1;
+    }
+}
@@ -0,0 +1,265 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.event.Progress;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * the mapped source has to read and save a file like the in-memory path does - which decodes it as a whole.
+ */
+class MappedFileSourceTest {
+
+    private static final int CHECKPOINT_BYTES = 1 << 12;
+    private static final int LARGE_FILE_SIZE = (1 << 24) + (1 << 20);
+    private static final String[] FRAGMENTS = {"plain ascii ", "é", "中文", "😀"};
+    private static final String[] LINE_BREAKS = {"\r\n", "\r", "\n"};
+    private static final byte[][] MALFORMED = {{(byte) 0xff}, {(byte) 0x80}, {(byte) 0xe4, (byte) 0xb8},
+            {(byte) 0xf0, (byte) 0x9f}, {(byte) 0xed, (byte) 0xa0, (byte) 0x80}};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void normalizesLineBreaksAcrossCheckpoints() throws IOException {
+        var random = new Random(1);
+        var content = new StringBuilder();
+        var expected = new StringBuilder();
+        while (content.length() < 10 * CHECKPOINT_BYTES) {
+            var line = "é😀 line ".repeat(random.nextInt(20)) + content.length();
+            var lineBreak = switch (random.nextInt(3)) {
+                case 0 -> "\r\n";
+                case 1 -> "\r";
+                default -> "\n";
+            };
+            content.append(line).append(lineBreak);
+            expected.append(line).append('\n');
+        }
+        try (var source = open(content.toString())) {
+            assertText(expected.toString(), source);
+            for (int i = 0; i < 200; i++) {
+                var from = random.nextInt(expected.length());
+                var to = Math.min(expected.length(), from + random.nextInt(3 * CHECKPOINT_BYTES));
+                if (Character.isLowSurrogate(expected.charAt(from)) || to < expected.length()
+                        && Character.isLowSurrogate(expected.charAt(to))) {
+                    continue;
+                }
+                var range = new StringBuilder();
+                source.appendTo(range, from, to);
+                assertEquals(expected.substring(from, to), range.toString());
+                assertEquals(expected.substring(0, from) + expected.substring(to), saved(source, from, to));
+            }
+        }
+    }
+
+    @Test
+    void readsAReturnAtTheEndAsNewline() throws IOException {
+        try (var source = open("a\r\nb\r")) {
+            assertText("a\nb\n", source);
+            assertEquals("a\nb\n", saved(source, 0, 0));
+        }
+    }
+
+    @Test
+    void decodesMalformedBytesAcrossCheckpoints() throws IOException {
+        var random = new Random(2);
+        var content = content(random, 20 * CHECKPOINT_BYTES);
+        var expected = inMemory(content);
+        var file = Files.write(directory.resolve("mapped.txt"), content);
+        try (var source = MappedFileSource.open(file)) {
+            source.awaitIndexed();
+            assertText(expected, source);
+            for (int i = 0; i < 200; i++) {
+                var from = random.nextInt(expected.length());
+                var to = Math.min(expected.length(), from + random.nextInt(3 * CHECKPOINT_BYTES));
+                if (Character.isLowSurrogate(expected.charAt(from)) || to < expected.length()
+                        && Character.isLowSurrogate(expected.charAt(to))) {
+                    continue;
+                }
+                var range = new StringBuilder();
+                source.appendTo(range, from, to);
+                assertEquals(expected.substring(from, to), range.toString());
+                assertEquals(expected.substring(0, from) + expected.substring(to), saved(source, from, to));
+            }
+        }
+    }
+
+    @Test
+    void savesMalformedBytesAsReplacementCharacters() throws IOException {
+        var content = new ByteArrayOutputStream();
+        content.writeBytes("ok ".getBytes(StandardCharsets.UTF_8));
+        content.writeBytes(MALFORMED[0]);
+        content.writeBytes(("\n" + "x".repeat(2 * CHECKPOINT_BYTES)).getBytes(StandardCharsets.UTF_8));
+        var file = Files.write(directory.resolve("mapped.txt"), content.toByteArray());
+        try (var source = MappedFileSource.open(file)) {
+            source.awaitIndexed();
+            var expected = inMemory(content.toByteArray());
+            assertEquals(expected.substring(0, 1) + expected.substring(2), saved(source, 1, 2));
+        }
+    }
+
+    @Test
+    void readsLinesLikeInMemoryWhileIndexing() throws IOException {
+        var file = Files.write(directory.resolve("large.txt"), content(new Random(3), LARGE_FILE_SIZE));
+        var memory = loadInMemory(file);
+        var mapped = new PieceTableBuffer();
+        mapped.load(file, Progress.NONE);
+        var checked = 0;
+        while (!mapped.isLoaded()) { // the last line of the indexed prefix is still incomplete
+            mapped.followLoading();
+            for (; checked < mapped.lineCount() - 1; checked++) {
+                assertEquals(memory.line(checked).toString(), mapped.line(checked).toString());
+            }
+        }
+        mapped.awaitLoaded();
+        assertEquals(memory.lineCount(), mapped.lineCount());
+        for (; checked < mapped.lineCount(); checked++) {
+            assertEquals(memory.line(checked).toString(), mapped.line(checked).toString());
+        }
+        mapped.close();
+    }
+
+    /**
+     * the edits cut the mapped original into pieces - transferred or written as text around the encoded ones added.
+     */
+    @Test
+    void savesEditsLikeInMemory() throws IOException {
+        var random = new Random(4);
+        var file = Files.write(directory.resolve("large.txt"), content(random, LARGE_FILE_SIZE));
+        var memory = loadInMemory(file);
+        var mapped = new PieceTableBuffer();
+        mapped.load(file, Progress.NONE);
+        assertSavedAlike(memory, mapped);
+        for (int i = 0; i < 500; i++) {
+            var line = random.nextInt(memory.lineCount());
+            var column = pairStart(memory, line, random.nextInt(memory.lineLength(line) + 1));
+            var text = memory.line(line).toString();
+            Consumer<TextBuffer> edit = switch (random.nextInt(5)) {
+                case 0 -> buffer -> buffer.insert(line, column, "ü😀 inserted\n中");
+                case 1 -> {
+                    var end = pairStart(memory, line, Math.min(text.length(), column + random.nextInt(100)));
+                    yield buffer -> buffer.delete(line, column, end - column);
+                }
+                case 2 -> buffer -> buffer.splitLine(line, column);
+                case 3 -> buffer -> buffer.joinWithNext(line);
+                default -> { // cuts the original between the halves of a surrogate pair
+                    var low = text.indexOf("\uDE00") >= 0 ? text.indexOf("\uDE00") : column;
+                    yield buffer -> {
+                        buffer.insert(line, low, 'x');
+                        buffer.deleteCharAt(line, low);
+                    };
+                }
+            };
+            edit.accept(memory);
+            edit.accept(mapped);
+        }
+        assertSavedAlike(memory, mapped);
+        mapped.close();
+    }
+
+    private void assertSavedAlike(TextBuffer memory, TextBuffer mapped) throws IOException {
+        var memoryFile = directory.resolve("memory.txt");
+        var mappedFile = directory.resolve("mapped.txt");
+        memory.save(memoryFile);
+        mapped.save(mappedFile);
+        assertArrayEquals(Files.readAllBytes(memoryFile), Files.readAllBytes(mappedFile));
+    }
+
+    /**
+     * random lines of multibyte characters, malformed bytes and all kinds of line breaks.
+     */
+    private static byte[] content(Random random, int size) {
+        var content = new ByteArrayOutputStream(size + 100);
+        while (content.size() < size) {
+            var next = random.nextInt(40);
+            if (next == 0) {
+                content.writeBytes(MALFORMED[random.nextInt(MALFORMED.length)]);
+            } else if (next < 4) {
+                content.writeBytes(LINE_BREAKS[next - 1].getBytes(StandardCharsets.UTF_8));
+            } else {
+                content.writeBytes(FRAGMENTS[random.nextInt(FRAGMENTS.length)].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return content.toByteArray();
+    }
+
+    /**
+     * decodes the content as a whole - with the line breaks normalized like on load.
+     */
+    private static String inMemory(byte[] content) {
+        var text = new StringBuilder();
+        var decoder = new Utf8Decoder();
+        decoder.decode(ByteBuffer.wrap(content), text);
+        decoder.finish(text);
+        return text.toString().replace("\r\n", "\n").replace('\r', '\n');
+    }
+
+    /**
+     * a buffer loaded the way files below the large file threshold are.
+     */
+    private static TextBuffer loadInMemory(Path file) throws IOException {
+        var text = new StringBuilder();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new Utf8Decoder().decode(channel, text);
+        }
+        var buffer = new PieceTableBuffer();
+        buffer.replaceBy(text.toString());
+        return buffer;
+    }
+
+    /**
+     * the column - or the one before, if it points to the low half of a surrogate pair.
+     */
+    private static int pairStart(TextBuffer buffer, int line, int column) {
+        var text = buffer.line(line);
+        return column > 0 && column < text.length() && Character.isLowSurrogate(text.charAt(column)) ? column - 1
+                : column;
+    }
+
+    private MappedFileSource open(String content) throws IOException {
+        var file = Files.writeString(directory.resolve("mapped.txt"), content);
+        var source = MappedFileSource.open(file);
+        source.awaitIndexed();
+        return source;
+    }
+
+    /**
+     * writes the source without the range [from, to) - as two pieces, that are transferred or written as text.
+     */
+    private String saved(MappedFileSource source, long from, long to) throws IOException {
+        var file = directory.resolve("saved.txt");
+        try (var writer = new AtomicFileWriter(file, StandardCharsets.UTF_8)) {
+            source.writeTo(writer, 0, from);
+            source.writeTo(writer, to, source.length());
+            writer.commit();
+        }
+        return Files.readString(file);
+    }
+
+    private static void assertText(String expected, MappedFileSource source) {
+        assertEquals(expected.length(), source.length());
+        var text = new StringBuilder();
+        source.appendTo(text, 0, source.length());
+        assertEquals(expected, text.toString());
+        var newlines = (int) expected.chars().filter(c -> c == '\n').count();
+        assertEquals(newlines, source.newlinesBetween(0, source.length()));
+        var offset = expected.indexOf('\n');
+        for (int n = 1; n <= newlines; n++) {
+            assertEquals(offset, source.newlineOffset(0, n));
+            offset = expected.indexOf('\n', offset + 1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.terminal.Cursor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * the index is built by the first search and then kept valid by rescanning the changed lines - it has to find the
+ * same matches as a fresh scan of the text.
+ */
+class SearchIndexTest {
+
+    private static final String SEARCH_TEXT = "ab";
+
+    @Test
+    void keepsTheMatchesValidOnEdits() {
+        var random = new Random(1);
+        var buffer = new PieceTableBuffer();
+        buffer.replaceBy("ab cab\nx ab\n\nabab");
+        var model = new EditorModel(() -> buffer);
+        for (int step = 0; step < 1000; step++) {
+            var line = random.nextInt(buffer.lineCount()) + 1;
+            var column = random.nextInt(buffer.lineLength(line - 1) + 1) + 1;
+            var cursor = new Cursor(model, line, column);
+            switch (random.nextInt(4)) {
+                case 0 -> model.insert("abx\n".charAt(random.nextInt(3)), cursor);
+                case 1 -> model.insert(random.nextBoolean() ? "b\na" : "ab", cursor);
+                case 2 -> model.deleteCharAt(cursor);
+                default -> model.insertLine(line + 1, column);
+            }
+            if (step % 10 == 0) {
+                assertEquals(matches(buffer), found(model), "matches at step " + step);
+            }
+        }
+        model.undo();
+        assertEquals(matches(buffer), found(model));
+    }
+
+    @Test
+    void searchesBackwardsFromThePosition() {
+        var buffer = new PieceTableBuffer();
+        buffer.replaceBy("ab ab\nab");
+        var model = new EditorModel(() -> buffer);
+        assertEquals(Optional.of(new Cursor.Position(1, 4)),
+                model.searchBackwards(SEARCH_TEXT, new Cursor.Position(2, 1)));
+        assertEquals(Optional.of(new Cursor.Position(1, 1)),
+                model.searchBackwards(SEARCH_TEXT, new Cursor.Position(1, 5)));
+        assertEquals(Optional.empty(), model.searchBackwards(SEARCH_TEXT, new Cursor.Position(1, 2)));
+    }
+
+    private static List<Cursor.Position> found(EditorModel model) {
+        var found = new ArrayList<Cursor.Position>();
+        var match = model.search(SEARCH_TEXT, new Cursor.Position(1, 1));
+        while (match.isPresent()) {
+            found.add(match.get());
+            match = model.search(SEARCH_TEXT, new Cursor.Position(match.get().line(), match.get().column() + 1));
+        }
+        return found;
+    }
+
+    private static List<Cursor.Position> matches(TextBuffer buffer) {
+        var matches = new ArrayList<Cursor.Position>();
+        for (int line = 0; line < buffer.lineCount(); line++) {
+            var text = buffer.line(line).toString();
+            for (int column = text.indexOf(SEARCH_TEXT); column >= 0; column = text.indexOf(SEARCH_TEXT, column + 1)) {
+                matches.add(new Cursor.Position(line + 1, column + 1));
+            }
+        }
+        return matches;
+    }
+}
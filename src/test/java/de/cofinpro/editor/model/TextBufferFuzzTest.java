@@ -0,0 +1,200 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.terminal.Cursor;
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * random edits on both buffers - checked against a plain list of lines, that applies them by re-splitting the whole
+ * text.
+ */
+class TextBufferFuzzTest {
+
+    private static final String ALPHABET = "abc xyz\né😀";
+    private static final int STEPS = 4000;
+
+    static Stream<Arguments> buffers() {
+        return Stream.of(1L, 2L, 3L, 4L, 5L).flatMap(seed -> Stream.of(
+                Arguments.of(Named.of("piece table", (Supplier<TextBuffer>) PieceTableBuffer::new), seed),
+                Arguments.of(Named.of("line list", (Supplier<TextBuffer>) LineListBuffer::new), seed)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("buffers")
+    void randomEditsMatchLineList(Supplier<TextBuffer> buffers, long seed) {
+        var random = new Random(seed);
+        var buffer = buffers.get();
+        var initial = randomText(random, 200);
+        buffer.replaceBy(initial);
+        var lines = split(initial);
+        for (int step = 0; step < STEPS; step++) {
+            var line = random.nextInt(lines.size());
+            var column = random.nextInt(lines.get(line).length() + 1);
+            switch (random.nextInt(7)) {
+                case 0 -> {
+                    var character = ALPHABET.charAt(random.nextInt(ALPHABET.length() - 3));
+                    buffer.insert(line, column, character);
+                    lines = edit(lines, line, column, 0, String.valueOf(character));
+                }
+                case 1 -> {
+                    var text = randomText(random, 12);
+                    buffer.insert(line, column, text);
+                    lines = edit(lines, line, column, 0, text);
+                }
+                case 2 -> {
+                    if (column < lines.get(line).length() || line < lines.size() - 1) {
+                        buffer.deleteCharAt(line, column);
+                        lines = edit(lines, line, column, 1, "");
+                    }
+                }
+                case 3 -> {
+                    var length = random.nextInt(Math.min(30, remaining(lines, line, column)) + 1);
+                    buffer.delete(line, column, length);
+                    lines = edit(lines, line, column, length, "");
+                }
+                case 4 -> {
+                    buffer.splitLine(line, column);
+                    lines = edit(lines, line, column, 0, "\n");
+                }
+                case 5 -> {
+                    buffer.joinWithNext(line);
+                    if (line < lines.size() - 1) {
+                        lines = edit(lines, line, lines.get(line).length(), 1, "");
+                    }
+                }
+                default -> lines = replaceLines(buffer, lines, random);
+            }
+            assertEquals(lines.size(), buffer.lineCount(), "line count at step " + step);
+            var checked = random.nextInt(lines.size());
+            assertEquals(lines.get(checked), buffer.line(checked).toString(), "line at step " + step);
+            if (step % 200 == 0) {
+                assertEquals(lines, lines(buffer), "text at step " + step);
+            }
+        }
+        assertEquals(lines, lines(buffer));
+        for (int line = 0; line < lines.size(); line++) {
+            var length = lines.get(line).length();
+            assertEquals(length, buffer.lineLength(line));
+            var from = random.nextInt(length + 1);
+            assertEquals(lines.get(line).substring(from, Math.min(length, from + 5)),
+                    buffer.substring(line, from, from + 5));
+        }
+    }
+
+    /**
+     * undo walks back through the states the edits passed - merged typing skips some - down to the loaded text, redo
+     * walks forward to the last one.
+     */
+    @ParameterizedTest
+    @MethodSource("buffers")
+    void undoAndRedoWalkThroughTheEditedStates(Supplier<TextBuffer> buffers, long seed) {
+        var random = new Random(seed);
+        var buffer = buffers.get();
+        buffer.replaceBy(randomText(random, 100).replace("😀", ""));
+        var model = new EditorModel(() -> buffer);
+        var states = new ArrayList<List<String>>();
+        states.add(lines(buffer));
+        for (int step = 0; step < 500; step++) {
+            var line = random.nextInt(buffer.lineCount()) + 1;
+            var column = random.nextInt(buffer.lineLength(line - 1) + 1) + 1;
+            var cursor = new Cursor(model, line, column);
+            switch (random.nextInt(5)) {
+                case 0, 1 -> model.insert(ALPHABET.charAt(random.nextInt(3)), cursor);
+                case 2 -> model.insert(randomText(random, 8).replace("😀", ""), cursor);
+                case 3 -> model.deleteCharAt(cursor);
+                default -> {
+                    if (random.nextInt(10) == 0) {
+                        model.replaceAll(Pattern.compile("b+"), "B");
+                    } else {
+                        model.insertLine(line + 1, column);
+                    }
+                }
+            }
+            states.add(lines(buffer));
+        }
+        var reached = states.size() - 1;
+        while (model.undo().isPresent()) {
+            var state = lines(buffer);
+            var earlier = states.subList(0, reached).lastIndexOf(state);
+            assertTrue(earlier >= 0, "undo reached a state the edits never passed");
+            reached = earlier;
+        }
+        assertEquals(states.get(0), lines(buffer));
+        while (model.redo().isPresent()) {
+            var state = lines(buffer);
+            var later = states.subList(reached + 1, states.size()).indexOf(state);
+            assertTrue(later >= 0, "redo reached a state the edits never passed");
+            reached += later + 1;
+        }
+        assertEquals(states.get(states.size() - 1), lines(buffer));
+    }
+
+    private static List<String> replaceLines(TextBuffer buffer, List<String> lines, Random random) {
+        var count = random.nextInt(Math.min(4, lines.size())) + 1;
+        var replaced = random.ints(0, lines.size()).distinct().limit(count).sorted().toArray();
+        var contents = new CharSequence[count];
+        var result = new ArrayList<>(lines);
+        for (int i = 0; i < count; i++) {
+            contents[i] = randomText(random, 10).replace("\n", "");
+            result.set(replaced[i], contents[i].toString());
+        }
+        buffer.replaceLines(replaced, contents, count);
+        return result;
+    }
+
+    private static List<String> edit(List<String> lines, int line, int column, int removed, String inserted) {
+        var text = String.join("\n", lines);
+        var offset = offset(lines, line, column);
+        return split(text.substring(0, offset) + inserted + text.substring(offset + removed));
+    }
+
+    private static int remaining(List<String> lines, int line, int column) {
+        return String.join("\n", lines).length() - offset(lines, line, column);
+    }
+
+    private static int offset(List<String> lines, int line, int column) {
+        var offset = column;
+        for (int i = 0; i < line; i++) {
+            offset += lines.get(i).length() + 1;
+        }
+        return offset;
+    }
+
+    private static List<String> split(String text) {
+        return Arrays.asList(text.split("\n", -1));
+    }
+
+    private static List<String> lines(TextBuffer buffer) {
+        var lines = new ArrayList<String>();
+        for (int line = 0; line < buffer.lineCount(); line++) {
+            lines.add(buffer.line(line).toString());
+        }
+        return lines;
+    }
+
+    /**
+     * random text of the alphabet - a surrogate pair is never cut.
+     */
+    private static String randomText(Random random, int maxLength) {
+        var text = new StringBuilder();
+        var length = random.nextInt(maxLength + 1);
+        while (text.length() < length) {
+            var index = random.nextInt(ALPHABET.length() - 1);
+            text.append(index == ALPHABET.length() - 2 ? ALPHABET.substring(index) : ALPHABET.charAt(index));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package de.cofinpro.editor.model;
+
+import de.cofinpro.editor.terminal.Cursor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UndoJournalTest {
+
+    private static final LineChangeListener IGNORED = (line, removed, added) -> {
+    };
+
+    private final TextBuffer buffer = new PieceTableBuffer();
+
+    @Test
+    void mergesTypingIntoOneStep() {
+        var journal = new UndoJournal(UndoJournal.DEFAULT_CAPACITY);
+        type(journal, 0, 0, "hello");
+        assertEquals(Optional.of(new Cursor.Position(1, 1)), journal.undo(buffer, IGNORED));
+        assertEquals("", buffer.line(0).toString());
+        assertTrue(journal.undo(buffer, IGNORED).isEmpty());
+        assertEquals(Optional.of(new Cursor.Position(1, 6)), journal.redo(buffer, IGNORED));
+        assertEquals("hello", buffer.line(0).toString());
+    }
+
+    @Test
+    void startsANewStepWhereTypingJumps() {
+        var journal = new UndoJournal(UndoJournal.DEFAULT_CAPACITY);
+        type(journal, 0, 0, "abc");
+        type(journal, 0, 1, "x");
+        journal.undo(buffer, IGNORED);
+        assertEquals("abc", buffer.line(0).toString());
+    }
+
+    @Test
+    void mergesBackspacesIntoOneStep() {
+        var journal = new UndoJournal(UndoJournal.DEFAULT_CAPACITY);
+        buffer.replaceBy("hello world");
+        for (int column = 10; column >= 6; column--) {
+            journal.recordDelete(0, column, buffer.line(0).charAt(column));
+            buffer.deleteCharAt(0, column);
+        }
+        assertEquals("hello ", buffer.line(0).toString());
+        journal.undo(buffer, IGNORED);
+        assertEquals("hello world", buffer.line(0).toString());
+        journal.redo(buffer, IGNORED);
+        assertEquals("hello ", buffer.line(0).toString());
+    }
+
+    @Test
+    void aNewEditDiscardsTheUndoneSteps() {
+        var journal = new UndoJournal(UndoJournal.DEFAULT_CAPACITY);
+        type(journal, 0, 0, "abc");
+        journal.undo(buffer, IGNORED);
+        type(journal, 0, 0, "x");
+        assertTrue(journal.redo(buffer, IGNORED).isEmpty());
+        journal.undo(buffer, IGNORED);
+        assertEquals("", buffer.line(0).toString());
+        assertTrue(journal.undo(buffer, IGNORED).isEmpty());
+    }
+
+    @Test
+    void undoesTheLinesOfAReplaceAllAsOneStep() {
+        var journal = new UndoJournal(UndoJournal.DEFAULT_CAPACITY);
+        buffer.replaceBy("a1\nb\na2");
+        var replacements = new LineReplacements(new int[] {0, 2}, new CharSequence[] {"x1", "x2"}, 2, 2);
+        journal.recordLines(buffer, replacements);
+        buffer.replaceLines(replacements.lines(), replacements.contents(), replacements.count());
+        assertEquals(Optional.of(new Cursor.Position(1, 1)), journal.undo(buffer, IGNORED));
+        assertEquals("a1", buffer.line(0).toString());
+        assertEquals("a2", buffer.line(2).toString());
+    }
+
+    @Test
+    void dropsTheOldestStepsBeyondTheCapacity() {
+        var journal = new UndoJournal(1024);
+        for (int i = 0; i < 100; i++) {
+            type(journal, 0, 0, "step");
+        }
+        var undone = 0;
+        while (journal.undo(buffer, IGNORED).isPresent()) {
+            undone++;
+        }
+        assertTrue(undone > 0 && undone < 100, "undone " + undone);
+        assertEquals(4 * (100 - undone), buffer.lineLength(0));
+    }
+
+    @Test
+    void aStepLargerThanTheCapacityClearsTheHistory() {
+        var journal = new UndoJournal(1024);
+        type(journal, 0, 0, "small");
+        var large = "x".repeat(1024);
+        journal.recordInsert(0, 0, large);
+        buffer.insert(0, 0, large);
+        assertTrue(journal.undo(buffer, IGNORED).isEmpty());
+    }
+
+    /**
+     * types the text char by char - as the editor records it.
+     */
+    private void type(UndoJournal journal, int line, int column, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            journal.recordInsert(line, column + i, String.valueOf(text.charAt(i)));
+            buffer.insert(line, column + i, text.charAt(i));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package de.cofinpro.editor.terminal;
+
+import de.cofinpro.editor.model.EditorModel;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * random edits, lookups and resizes - after which the index has to agree with the row counts of all lines summed
+ * up.
+ */
+class WrapIndexTest {
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3})
+    void agreesWithTheSummedRowCounts(long seed) {
+        var random = new Random(seed);
+        var model = new EditorModel();
+        var width = 7;
+        var index = new WrapIndex(model, width);
+        model.addListener(index);
+        for (int step = 0; step < 5000; step++) {
+            var lines = model.lineCount();
+            var line = random.nextInt(lines) + 1;
+            var column = random.nextInt(model.getColsInLine(line) + 1) + 1;
+            switch (random.nextInt(8)) {
+                case 0 -> model.insertLine(line + 1, column);
+                case 1 -> {
+                    var text = random.nextInt(3) == 0 ? "中文x" : "abcdefghij".substring(random.nextInt(10));
+                    model.insert(random.nextBoolean() ? text : text + "\nxyz" + text, new Cursor(model, line, column));
+                }
+                case 2 -> model.deleteCharAt(new Cursor(model, line, column));
+                case 3 -> index.rows(line - 1);
+                case 4 -> index.rowOf(line - 1);
+                case 5 -> index.lineAt(random.nextInt(lines * 3));
+                case 6 -> {
+                    if (random.nextInt(50) == 0) {
+                        width = 3 + random.nextInt(10);
+                        index.resize(width);
+                    }
+                }
+                default -> model.undo();
+            }
+            if (step % 100 == 0) {
+                assertSummedUp(model, index, width);
+            }
+        }
+        assertSummedUp(model, index, width);
+    }
+
+    private static void assertSummedUp(EditorModel model, WrapIndex index, int width) {
+        var row = 0;
+        for (int line = 0; line < model.lineCount(); line++) {
+            var rows = model.getLineWidth(line + 1) / width + 1;
+            assertEquals(rows, index.rows(line));
+            assertEquals(row, index.rowOf(line));
+            for (int segment = 0; segment < rows; segment++) {
+                assertEquals(line, index.lineAt(row + segment));
+            }
+            row += rows;
+        }
+        assertEquals(model.lineCount() - 1, index.lineAt(row + 5));
+    }
+}